@@ -0,0 +1,166 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+/**
+ * Immutable Snapshot Of A Key Store Entry
+ * 
+ * @author Derek Helbert
+ */
+public final class AliasRecord {
+
+	/** Certificate Entry */
+	public static final int CERTIFICATE = 0;
+
+	/** Key Pair Entry */
+	public static final int KEY_PAIR = 1;
+
+	/** Key Entry */
+	public static final int KEY = 2;
+
+	/** Alias */
+	private final String alias;
+
+	/** Creation Date */
+	private final Date creationDate;
+
+	/** Entry Kind */
+	private final int kind;
+
+	/** Chain Length */
+	private final int chainLength;
+
+	/** Not After Of First Certificate */
+	private final Date notAfter;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param alias Alias
+	 * @param creationDate Creation Date
+	 * @param kind Entry Kind
+	 * @param chainLength Chain Length
+	 * @param notAfter Not After
+	 */
+	public AliasRecord(String alias, Date creationDate, int kind,
+			int chainLength, Date notAfter) {
+		this.alias = alias;
+		this.creationDate = creationDate;
+		this.kind = kind;
+		this.chainLength = chainLength;
+		this.notAfter = notAfter;
+	}
+
+	/**
+	 * Read Record From Key Store Manager
+	 * 
+	 * @param manager Key Store Manager
+	 * @param alias Alias
+	 * 
+	 * @return AliasRecord
+	 */
+	public static AliasRecord create(KeystoreManager manager, String alias) {
+		boolean certEntry = manager.isCertificateEntry(alias);
+		Certificate[] chain = null;
+		Certificate first = null;
+
+		try {
+			if (certEntry) {
+				first = manager.getCertificate(alias);
+			} else {
+				chain = manager.getCertificateChain(alias);
+
+				if (chain != null && chain.length > 0) {
+					first = chain[0];
+				}
+			}
+		} catch (Exception err) {
+			err.printStackTrace();
+		}
+
+		int kind;
+		int size = chain == null ? 0 : chain.length;
+
+		if (certEntry) {
+			kind = CERTIFICATE;
+			size = first == null ? 0 : 1;
+		} else if (size > 0) {
+			kind = KEY_PAIR;
+		} else {
+			kind = KEY;
+		}
+
+		Date notAfter = null;
+
+		if (first instanceof X509Certificate) {
+			notAfter = ((X509Certificate) first).getNotAfter();
+		}
+
+		return new AliasRecord(alias, manager.getCreationDate(alias), kind,
+				size, notAfter);
+	}
+
+	/**
+	 * Get Alias
+	 * 
+	 * @return String
+	 */
+	public String getAlias() {
+		return alias;
+	}
+
+	/**
+	 * Get Creation Date
+	 * 
+	 * @return Date
+	 */
+	public Date getCreationDate() {
+		return creationDate == null ? null : (Date) creationDate.clone();
+	}
+
+	/**
+	 * Get Entry Kind
+	 * 
+	 * @return int
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * Get Chain Length
+	 * 
+	 * @return int
+	 */
+	public int getChainLength() {
+		return chainLength;
+	}
+
+	/**
+	 * Get Not After
+	 * 
+	 * @return Date
+	 */
+	public Date getNotAfter() {
+		return notAfter == null ? null : (Date) notAfter.clone();
+	}
+}
@@ -17,13 +17,24 @@
  */
 package com.jlocksmith;
 
-import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.SwingWorker;
 
 import com.jlocksmith.util.LocaleUtil;
 
 /**
- * Table Model For Key Store Aliases
+ * Table Model For Key Store Aliases. Cells are served from an immutable
+ * snapshot of {@link AliasRecord}s which is rebuilt off the event dispatch
+ * thread when a key store is loaded. Entry events naming their aliases are
+ * applied incrementally to the sorted rows, in one merge pass per event.
  * 
  * @author Derek Helbert
  */
@@ -34,8 +45,23 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 */
 	private static final long serialVersionUID = -4400217235184819844L;
 
-	/** Aliases */
-	List<String> aliasList = null;
+	/**
+	 * Maximum Row Events Per Change, more contiguous runs of changed rows
+	 * are reported as a data change, which drops the selection
+	 */
+	private static final int MAX_ROW_EVENTS = 64;
+
+	/** Rows */
+	private AliasRecord[] rows = new AliasRecord[0];
+
+	/** Records By Alias */
+	private Map<String, AliasRecord> records = new HashMap<String, AliasRecord>();
+
+	/** Snapshot Generation */
+	private int generation = 0;
+
+	/** Snapshot Load Pending Flag */
+	private boolean loading = false;
 
 	/** Key Store Manager */
 	KeystoreManager manager = KeystoreManager.getInstance();
@@ -43,6 +69,10 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	/** Locale Utility */
 	LocaleUtil localeUtil = LocaleUtil.getInstance();
 
+	/** Type Labels Indexed By Entry Kind */
+	private String[] typeLabels = { localeUtil.getString("certificate"),
+			localeUtil.getString("keypair"), localeUtil.getString("key") };
+
 	/**
 	 * Constructor
 	 * 
@@ -52,15 +82,277 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	}
 
 	/**
-	 * Load List
+	 * Load Snapshot In Background
 	 * 
 	 */
 	private void init() {
+		final int gen = ++generation;
+		loading = true;
+
+		new SwingWorker<AliasRecord[], Object>() {
+			protected AliasRecord[] doInBackground() throws Exception {
+				return loadRecords();
+			}
+
+			protected void done() {
+				// A newer snapshot has been requested
+				if (gen != generation) {
+					return;
+				}
+
+				try {
+					rows = get();
+				} catch (Exception err) {
+					err.printStackTrace();
+					rows = new AliasRecord[0];
+				}
+
+				records.clear();
+
+				for (int i = 0; i < rows.length; i++) {
+					records.put(rows[i].getAlias(), rows[i]);
+				}
+
+				loading = false;
+
+				if (getSortColumn() == -1) {
+					sort(0, true);
+				} else {
+					sort(getSortColumn(), isSortAscending());
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Apply Changed Aliases To Rows
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void update(KeystoreEvent evt) {
+		String[] aliases = evt.getAliases();
+
+		// Unknown change or snapshot still loading
+		if (aliases == null || loading) {
+			init();
+			return;
+		}
+
+		List<AliasRecord> removed = new ArrayList<AliasRecord>();
+		List<AliasRecord> inserted = new ArrayList<AliasRecord>();
+
+		for (int i = 0; i < aliases.length; i++) {
+			AliasRecord old = records.get(aliases[i]);
+			AliasRecord record = null;
+
+			if (manager.containsAlias(aliases[i])) {
+				record = AliasRecord.create(manager, aliases[i]);
+			}
+
+			if (old != null && record != null
+					&& compare(getValue(old, getSortColumn()), getValue(record,
+							getSortColumn())) == 0) {
+				int row = indexOf(old);
+				rows[row] = record;
+				records.put(aliases[i], record);
+				fireTableRowsUpdated(row, row);
+				continue;
+			}
+
+			if (old != null) {
+				removed.add(old);
+				records.remove(aliases[i]);
+			}
+
+			if (record != null) {
+				inserted.add(record);
+				records.put(aliases[i], record);
+			}
+		}
+
+		if (!removed.isEmpty() || !inserted.isEmpty()) {
+			merge(removed, inserted);
+		}
+	}
+
+	/**
+	 * Find Row Of Record
+	 * 
+	 * @param record Record
+	 * 
+	 * @return int
+	 */
+	private int indexOf(AliasRecord record) {
+		int col = getSortColumn();
+
+		if (col != -1) {
+			Object key = getValue(record, col);
+			int sign = isSortAscending() ? 1 : -1;
+			int lo = 0;
+			int hi = rows.length;
+
+			// Lower bound of key
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+
+				if (sign * compare(getValue(rows[mid], col), key) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+
+			for (int i = lo; i < rows.length
+					&& compare(getValue(rows[i], col), key) == 0; i++) {
+				if (rows[i] == record) {
+					return i;
+				}
+			}
+		}
+
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i] == record) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Remove And Insert Records In One Pass Over The Sorted Rows. Inserted
+	 * records follow existing rows with an equal key. Each contiguous run of
+	 * removed rows is reported as deleted, bottom up, then each run of
+	 * inserted rows as inserted, top down, so the table keeps its selection.
+	 * More than MAX_ROW_EVENTS runs are reported as one data change.
+	 * 
+	 * @param removed Records To Remove
+	 * @param inserted Records To Insert
+	 */
+	private void merge(List<AliasRecord> removed, List<AliasRecord> inserted) {
+		final int col = getSortColumn();
+		final int sign = isSortAscending() ? 1 : -1;
+		Set<AliasRecord> drop = Collections
+				.newSetFromMap(new IdentityHashMap<AliasRecord, Boolean>());
+		drop.addAll(removed);
+
+		if (col != -1) {
+			Collections.sort(inserted, new Comparator<AliasRecord>() {
+				public int compare(AliasRecord r1, AliasRecord r2) {
+					return sign
+							* SortableTableModel.compare(getValue(r1, col),
+									getValue(r2, col));
+				}
+			});
+		}
+
+		AliasRecord[] merged = new AliasRecord[rows.length + inserted.size()];
+		int[] removedRows = new int[removed.size()];
+		int[] insertedRows = new int[inserted.size()];
+		int r = 0;
+		int n = 0;
+		int j = 0;
+
+		for (int i = 0; i < rows.length; i++) {
+			if (drop.contains(rows[i])) {
+				removedRows[r++] = i;
+				continue;
+			}
+
+			while (col != -1
+					&& j < inserted.size()
+					&& sign
+							* compare(getValue(rows[i], col), getValue(inserted
+									.get(j), col)) > 0) {
+				insertedRows[j] = n;
+				merged[n++] = inserted.get(j++);
+			}
+
+			merged[n++] = rows[i];
+		}
+
+		while (j < inserted.size()) {
+			insertedRows[j] = n;
+			merged[n++] = inserted.get(j++);
+		}
+
+		if (n < merged.length) {
+			AliasRecord[] temp = new AliasRecord[n];
+			System.arraycopy(merged, 0, temp, 0, n);
+			merged = temp;
+		}
+
+		rows = merged;
+
+		if (runs(removedRows, r) + runs(insertedRows, j) > MAX_ROW_EVENTS) {
+			fireTableDataChanged();
+			return;
+		}
+
+		// Bottom up, so the rows above keep their index
+		for (int end = r - 1; end >= 0;) {
+			int start = end;
+
+			while (start > 0 && removedRows[start - 1] == removedRows[start] - 1) {
+				start--;
+			}
+
+			fireTableRowsDeleted(removedRows[start], removedRows[end]);
+			end = start - 1;
+		}
+
+		for (int start = 0; start < j;) {
+			int end = start;
+
+			while (end + 1 < j && insertedRows[end + 1] == insertedRows[end] + 1) {
+				end++;
+			}
+
+			fireTableRowsInserted(insertedRows[start], insertedRows[end]);
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Count Contiguous Runs Of Ascending Row Indexes
+	 * 
+	 * @param indexes Row Indexes
+	 * @param count Number Of Indexes Used
+	 * 
+	 * @return int
+	 */
+	private static int runs(int[] indexes, int count) {
+		int runs = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || indexes[i] != indexes[i - 1] + 1) {
+				runs++;
+			}
+		}
+
+		return runs;
+	}
+
+	/**
+	 * Load Records
+	 * 
+	 * @return AliasRecord[]
+	 */
+	private AliasRecord[] loadRecords() {
 		try {
-			aliasList = manager.getAliases();
+			List<String> aliases = manager.getAliases();
+			AliasRecord[] records = new AliasRecord[aliases.size()];
+
+			for (int i = 0; i < records.length; i++) {
+				records[i] = AliasRecord.create(manager, aliases.get(i));
+			}
+
+			return records;
 		} catch (Exception err) {
 			err.printStackTrace();
 		}
+
+		return new AliasRecord[0];
 	}
 
 	/**
@@ -98,9 +390,7 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @param evt
 	 */
 	public void entryImported(KeystoreEvent evt) {
-		init();
-		sort(0,true);
-		fireTableRowsInserted(getRowCount(), getRowCount());
+		update(evt);
 	}
 
 	/**
@@ -109,9 +399,7 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @param evt
 	 */
 	public void entryDeleted(KeystoreEvent evt) {
-		init();
-		sort(0,true);
-		fireTableDataChanged();
+		update(evt);
 	}
 
 	/**
@@ -121,8 +409,14 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 */
 	public void keyStoreLoaded(KeystoreEvent evt) {
 		init();
-		sort(0,true);
-		fireTableDataChanged();
+	}
+
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt
+	 */
+	public void keyStoreSaved(KeystoreEvent evt) {
 	}
 
 	/**
@@ -140,7 +434,7 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @return int
 	 */
 	public int getRowCount() {
-		return aliasList == null ? 0 : aliasList.size();
+		return rows.length;
 	}
 
 	/**
@@ -149,7 +443,18 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @return String
 	 */
 	public String getAlias(int rowIndex ) {
-		return getValueAt(rowIndex, 0).toString();
+		return rows[rowIndex].getAlias();
+	}
+
+	/**
+	 * Get Record
+	 * 
+	 * @param rowIndex
+	 * 
+	 * @return AliasRecord
+	 */
+	public AliasRecord getRecord(int rowIndex) {
+		return rows[rowIndex];
 	}
 	
 	/**
@@ -161,32 +466,24 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @return Object
 	 */
 	public Object getValueAt(int rowIndex, int columnIndex) {
-		String alias = aliasList.get(rowIndex).toString();
-		int size = 0;
-
-		try {
-			Certificate[] chain = manager.getCertificateChain(alias);
-
-			if (chain != null) {
-				size = chain.length;
-			}
-		} catch (Exception err) {
-			err.printStackTrace();
-		}
+		return getValue(rows[rowIndex], columnIndex);
+	}
 
+	/**
+	 * Get Column Value Of Record
+	 * 
+	 * @param record Record
+	 * @param columnIndex Column Index
+	 * 
+	 * @return Object
+	 */
+	private Object getValue(AliasRecord record, int columnIndex) {
 		if (columnIndex == 0) {
-			return alias;
-		}
-		if (columnIndex == 1) {
-			return manager.getCreationDate(alias);
+			return record.getAlias();
+		} else if (columnIndex == 1) {
+			return record.getCreationDate();
 		} else {
-			if (manager.isCertificateEntry(alias)) {
-				return localeUtil.getString("certificate");
-			} else if (manager.isKeyEntry(alias) && size > 0) {
-				return localeUtil.getString("keypair");
-			} else {
-				return localeUtil.getString("key");
-			}
+			return typeLabels[record.getKind()];
 		}
 	}
 
@@ -197,9 +494,24 @@ public class AliasTableModel extends SortableTableModel implements KeystoreListe
 	 * @param row2
 	 */
 	public void swapRows(int row1, int row2) {
-		String temp = aliasList.get(row1);
-		aliasList.set(row1, aliasList.get(row2));
-		aliasList.set(row2, temp);
+		AliasRecord temp = rows[row1];
+		rows[row1] = rows[row2];
+		rows[row2] = temp;
+	}
+
+	/**
+	 * Apply Row Permutation
+	 * 
+	 * @param perm Permutation (new row to old row)
+	 */
+	protected void applyPermutation(int[] perm) {
+		AliasRecord[] sorted = new AliasRecord[rows.length];
+
+		for (int i = 0; i < perm.length; i++) {
+			sorted[i] = rows[perm[i]];
+		}
+
+		rows = sorted;
 	}
 
 }
@@ -0,0 +1,643 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import com.jlocksmith.util.CertificateUtil;
+import com.jlocksmith.util.KeyUtil;
+import com.jlocksmith.util.MonotonicSerialNumberGenerator;
+import com.jlocksmith.util.RandomSerialNumberGenerator;
+import com.jlocksmith.util.SecurityUtil;
+
+/**
+ * Batch Tool. Runs key store scripts without the user interface, one
+ * command per line:
+ * 
+ * <pre>
+ * load &lt;path&gt; &lt;password&gt; [type]
+ * new [type]
+ * import &lt;directory or archive&gt; [alias template]
+ * serials &lt;random or monotonic&gt; [counter file]
+ * provision &lt;count or names.csv&gt; &lt;subject&gt; &lt;key password&gt; [alias template] [algorithm] [size]
+ * export &lt;directory, bundle.pem or archive.zip&gt; [alias regex]
+ * rename &lt;regex&gt; &lt;replacement&gt; [key password]
+ * delete-expired
+ * expiring &lt;days&gt;
+ * scan &lt;days&gt; &lt;directory&gt; &lt;password&gt;
+ * list
+ * save [path] [password]
+ * </pre>
+ * 
+ * Scripts are read from the files given as arguments, or from standard input.
+ * Blank lines and lines starting with # are ignored, arguments containing
+ * spaces may be quoted.
+ * 
+ * @author Derek Helbert
+ */
+public class BatchTool {
+
+	/** Progress Interval */
+	private static final int PROGRESS_INTERVAL = 1000;
+
+	/** Key Store Manager */
+	private KeystoreManager manager = new KeystoreManager();
+
+	/** Security Utility */
+	private SecurityUtil securityUtil = SecurityUtil.getInstance();
+
+	/** Output */
+	private PrintStream out;
+
+	/** Entries Processed By Current Command */
+	private int count = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param out Output
+	 */
+	public BatchTool(PrintStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Get Key Store Manager
+	 * 
+	 * @return KeystoreManager
+	 */
+	public KeystoreManager getManager() {
+		return manager;
+	}
+
+	/**
+	 * Run Script
+	 * 
+	 * @param script Script Reader
+	 * 
+	 * @throws Exception
+	 */
+	public void run(Reader script) throws Exception {
+		BufferedReader reader = new BufferedReader(script);
+		int lineNumber = 0;
+
+		for (String line = reader.readLine(); line != null; line = reader
+				.readLine()) {
+			lineNumber++;
+			String[] args = tokenize(line.trim());
+
+			if (args.length == 0 || args[0].startsWith("#")) {
+				continue;
+			}
+
+			try {
+				execute(args);
+			} catch (Exception err) {
+				throw new Exception("Line " + lineNumber + ": " + args[0]
+						+ ": " + err.getMessage(), err);
+			}
+		}
+	}
+
+	/**
+	 * Execute Command
+	 * 
+	 * @param args Command And Arguments
+	 * 
+	 * @throws Exception
+	 */
+	public void execute(String[] args) throws Exception {
+		String command = args[0];
+		long start = System.currentTimeMillis();
+		count = 0;
+
+		if ("load".equals(command)) {
+			load(arg(args, 1), arg(args, 2), args.length > 3 ? args[3] : null);
+			count = manager.getSize();
+		} else if ("new".equals(command)) {
+			String type = args.length > 1 ? args[1] : KeyStore.getDefaultType();
+			manager.newKeyStore(type, securityUtil.getKeystoreProviderName(type));
+		} else if ("import".equals(command)) {
+			importCertificates(new File(arg(args, 1)),
+					args.length > 2 ? args[2] : null);
+		} else if ("serials".equals(command)) {
+			serials(arg(args, 1), args.length > 2 ? new File(args[2]) : null);
+		} else if ("provision".equals(command)) {
+			String algorithm = args.length > 5 ? args[5] : KeyUtil.RSA;
+			provision(arg(args, 1), arg(args, 2), arg(args, 3),
+					args.length > 4 ? args[4] : null, algorithm,
+					args.length > 6 ? Integer.parseInt(args[6]) : KeyUtil
+							.getDefaultKeySize(algorithm));
+		} else if ("export".equals(command)) {
+			exportCertificates(new File(arg(args, 1)),
+					args.length > 2 ? Pattern.compile(args[2]) : null);
+		} else if ("rename".equals(command)) {
+			rename(Pattern.compile(arg(args, 1)), arg(args, 2),
+					args.length > 3 ? args[3] : null);
+		} else if ("delete-expired".equals(command)) {
+			deleteExpired(new Date());
+		} else if ("expiring".equals(command)) {
+			expiring(Integer.parseInt(arg(args, 1)));
+		} else if ("scan".equals(command)) {
+			scan(Integer.parseInt(arg(args, 1)), new File(arg(args, 2)), arg(
+					args, 3));
+		} else if ("list".equals(command)) {
+			list();
+		} else if ("save".equals(command)) {
+			String path = args.length > 1 ? args[1] : manager.getFilePath();
+			String password = args.length > 2 ? args[2] : manager
+					.getKeystorePassword();
+
+			if (path == null || password == null) {
+				throw new IllegalArgumentException("Path and password required");
+			}
+
+			manager.storeKeyStore(path, password);
+			count = manager.getSize();
+		} else {
+			throw new IllegalArgumentException("Unknown command");
+		}
+
+		out.println(command + ": " + count + " entries in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Load Key Store
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * @param type Key Store Type or null to use the file extension
+	 * 
+	 * @throws Exception
+	 */
+	private void load(String path, String password, String type)
+			throws Exception {
+		if (type == null) {
+			int dot = path.lastIndexOf('.');
+
+			if (dot != -1) {
+				type = securityUtil.getFileKeystoreMap().get(
+						path.substring(dot).toLowerCase());
+			}
+
+			if (type == null) {
+				type = KeyStore.getDefaultType();
+			}
+		}
+
+		manager.loadKeyStore(path, password, type, securityUtil
+				.getKeystoreProviderName(type));
+	}
+
+	/**
+	 * Import Certificate Files Of A Directory Tree Or Archive
+	 * 
+	 * @param source Directory Or Archive
+	 * @param template Alias Template or null for the file name
+	 * 
+	 * @throws Exception
+	 */
+	private void importCertificates(File source, String template)
+			throws Exception {
+		BulkImporter importer = new BulkImporter(manager);
+
+		if (template != null) {
+			importer.setTemplate(template);
+		}
+
+		BulkImporter.Result result = importer.importCertificates(source);
+		count = result.getImported().size();
+
+		for (int i = 0; i < result.getFailures().size(); i++) {
+			out.println("  failed " + result.getFailures().get(i));
+		}
+
+		out.println("  " + result.getFiles() + " files, "
+				+ result.getDuplicates().size() + " duplicates, "
+				+ result.getUntrusted().size() + " untrusted");
+	}
+
+	/**
+	 * Set Serial Number Generator Of Generated Certificates
+	 * 
+	 * @param mode random or monotonic
+	 * @param file Counter File or null for the one of the preferences
+	 * 
+	 * @throws IOException
+	 */
+	private void serials(String mode, File file) throws IOException {
+		if (Preferences.SERIAL_RANDOM.equals(mode)) {
+			CertificateUtil.setSerialNumberGenerator(new RandomSerialNumberGenerator());
+		} else if (Preferences.SERIAL_MONOTONIC.equals(mode)) {
+			CertificateUtil.setSerialNumberGenerator(new MonotonicSerialNumberGenerator(
+					file != null ? file : new Preferences().getSerialNumberFile()));
+		} else {
+			throw new IllegalArgumentException("Unknown serial number mode "
+					+ mode);
+		}
+	}
+
+	/**
+	 * Provision Key Pair Entries With Self-Signed Certificates
+	 * 
+	 * @param names Number Of Entries Or CSV File Of Names
+	 * @param subject Subject Pattern
+	 * @param keyPassword Key Password
+	 * @param template Alias Template or null for the name
+	 * @param algorithm Key Algorithm
+	 * @param size Key Size
+	 * 
+	 * @throws Exception
+	 */
+	private void provision(String names, String subject, String keyPassword,
+			String template, String algorithm, int size) throws Exception {
+		KeyPairProvisioner provisioner = new KeyPairProvisioner(manager);
+		provisioner.setSubject(subject);
+		provisioner.setKeyPair(algorithm, size);
+
+		if (template != null) {
+			provisioner.setTemplate(template);
+		}
+
+		KeyPairProvisioner.Result result;
+
+		if (names.matches("\\d+")) {
+			result = provisioner.provision(Integer.parseInt(names), keyPassword);
+		} else {
+			result = provisioner.provision(KeyPairProvisioner
+					.readNames(new File(names)), keyPassword);
+		}
+
+		count = result.getCreated().size();
+
+		for (int i = 0; i < result.getFailures().size(); i++) {
+			out.println("  failed " + result.getFailures().get(i));
+		}
+	}
+
+	/**
+	 * Export Certificates As PEM. The target is a ZIP archive if it ends with
+	 * .zip, a bundle if it ends with .pem and a directory otherwise.
+	 * 
+	 * @param target Target File Or Directory
+	 * @param pattern Alias Pattern or null for all certificates
+	 * 
+	 * @throws Exception
+	 */
+	private void exportCertificates(File target, Pattern pattern)
+			throws Exception {
+		List<String> aliases = manager.getAliases();
+
+		if (pattern != null) {
+			List<String> matching = new ArrayList<String>();
+
+			for (int i = 0; i < aliases.size(); i++) {
+				if (pattern.matcher(aliases.get(i)).matches()) {
+					matching.add(aliases.get(i));
+				}
+			}
+
+			aliases = matching;
+		}
+
+		count = new PemExporter(manager).export(aliases, target, PemExporter
+				.getFormat(target));
+	}
+
+	/**
+	 * Rename Entries Whose Alias Matches. The new aliases are worked out
+	 * first, the command fails if one of them is taken by an entry which is
+	 * not renamed or if two entries would get the same alias. All renamed
+	 * entries are read and deleted before any is set again, so aliases may
+	 * be shifted onto each other (a to b, b to c).
+	 * 
+	 * @param pattern Alias Pattern
+	 * @param replacement Replacement
+	 * @param keyPassword Key Password or null to skip key entries
+	 * 
+	 * @throws Exception
+	 */
+	private void rename(Pattern pattern, String replacement, String keyPassword)
+			throws Exception {
+		manager.beginBatch();
+		boolean committed = false;
+
+		try {
+			List<String> aliases = manager.getAliases();
+			Map<String, String> renames = new LinkedHashMap<String, String>();
+
+			for (int i = 0; i < aliases.size(); i++) {
+				String alias = aliases.get(i);
+
+				if (!pattern.matcher(alias).find()) {
+					continue;
+				}
+
+				String newAlias = pattern.matcher(alias).replaceAll(replacement);
+
+				if (newAlias.equals(alias)) {
+					continue;
+				}
+
+				if (manager.isCertificateEntry(alias)
+						|| (keyPassword != null && manager.isKeyEntry(alias))) {
+					renames.put(alias, newAlias);
+				}
+			}
+
+			Set<String> targets = new HashSet<String>();
+
+			for (Iterator<Map.Entry<String, String>> it = renames.entrySet()
+					.iterator(); it.hasNext();) {
+				Map.Entry<String, String> entry = it.next();
+				String newAlias = entry.getValue();
+
+				if (!targets.add(newAlias)) {
+					throw new KeyStoreException("Several entries renamed to "
+							+ newAlias);
+				}
+
+				if (manager.containsAlias(newAlias)
+						&& !renames.containsKey(newAlias)) {
+					throw new KeyStoreException("Renaming " + entry.getKey()
+							+ " would overwrite " + newAlias);
+				}
+			}
+
+			// Read every renamed entry before any alias is reused
+			Map<String, Certificate> certs = new HashMap<String, Certificate>();
+			Map<String, Key> keys = new HashMap<String, Key>();
+			Map<String, Certificate[]> chains = new HashMap<String, Certificate[]>();
+
+			for (Iterator<String> it = renames.keySet().iterator(); it.hasNext();) {
+				String alias = it.next();
+
+				if (manager.isCertificateEntry(alias)) {
+					certs.put(alias, manager.getCertificate(alias));
+				} else {
+					keys.put(alias, manager.getKey(alias, keyPassword));
+					chains.put(alias, manager.isKeyPairEntry(alias) ? manager
+							.getCertificateChain(alias) : new Certificate[0]);
+				}
+			}
+
+			for (Iterator<String> it = renames.keySet().iterator(); it.hasNext();) {
+				manager.deleteEntry(it.next());
+			}
+
+			for (Iterator<Map.Entry<String, String>> it = renames.entrySet()
+					.iterator(); it.hasNext();) {
+				Map.Entry<String, String> entry = it.next();
+				String alias = entry.getKey();
+
+				if (certs.containsKey(alias)) {
+					manager.setCertificateEntry(entry.getValue(), certs.get(alias));
+				} else {
+					manager.setKeyEntry(entry.getValue(), keys.get(alias),
+							keyPassword, chains.get(alias));
+				}
+
+				progress();
+			}
+
+			manager.commit();
+			committed = true;
+		} finally {
+			if (!committed) {
+				manager.rollback();
+			}
+		}
+	}
+
+	/**
+	 * Delete Expired Certificate Entries
+	 * 
+	 * @param now Current Date
+	 * 
+	 * @throws Exception
+	 */
+	private void deleteExpired(Date now) throws Exception {
+		List<String> aliases = manager.getAliases();
+
+		manager.beginBatch();
+		boolean committed = false;
+
+		try {
+			for (int i = 0; i < aliases.size(); i++) {
+				String alias = aliases.get(i);
+
+				if (manager.isCertificateEntry(alias)) {
+					Certificate cert = manager.getCertificate(alias);
+
+					if (cert instanceof X509Certificate
+							&& ((X509Certificate) cert).getNotAfter().before(now)) {
+						manager.deleteEntry(alias);
+						progress();
+					}
+				}
+			}
+
+			manager.commit();
+			committed = true;
+		} finally {
+			if (!committed) {
+				manager.rollback();
+			}
+		}
+	}
+
+	/**
+	 * List Certificates Of The Key Store Expiring Within A Number Of Days
+	 * 
+	 * @param days Days
+	 */
+	private void expiring(int days) {
+		ExpiryIndex index = manager.getExpiryIndex();
+		index.rebuild();
+
+		List<ExpiryIndex.Entry> entries = index.getExpiringWithin(days);
+
+		for (int i = 0; i < entries.size(); i++) {
+			ExpiryIndex.Entry entry = entries.get(i);
+			out.println(entry.getNotAfter() + "\t" + entry.getAlias()
+					+ (entry.getPosition() > 0 ? "[" + entry.getPosition() + "]"
+							: "") + "\t" + entry.getSubject());
+			count++;
+		}
+	}
+
+	/**
+	 * Scan The Key Store Files Of A Directory Tree For Expiring Certificates
+	 * 
+	 * @param days Days
+	 * @param dir Directory
+	 * @param password Password Of All Key Stores
+	 */
+	private void scan(int days, File dir, String password) {
+		ExpiryScanner scanner = new ExpiryScanner();
+
+		try {
+			scanner.addDirectory(dir, password);
+
+			ExpiryScanner.Report report = scanner.scan(days);
+			out.print(report);
+			count = report.getItems().size();
+		} finally {
+			scanner.shutdown();
+		}
+	}
+
+	/**
+	 * List Entries
+	 * 
+	 * @throws Exception
+	 */
+	private void list() throws Exception {
+		List<String> aliases = manager.getAliases();
+
+		for (int i = 0; i < aliases.size(); i++) {
+			AliasRecord record = AliasRecord.create(manager, aliases.get(i));
+			out.println(record.getAlias() + "\t" + record.getKind() + "\t"
+					+ record.getChainLength() + "\t" + record.getNotAfter());
+			count++;
+		}
+	}
+
+	/**
+	 * Count Entry And Report Progress
+	 * 
+	 */
+	private void progress() {
+		if (++count % PROGRESS_INTERVAL == 0) {
+			out.println("  " + count + " entries");
+		}
+	}
+
+	/**
+	 * Get Required Argument
+	 * 
+	 * @param args Arguments
+	 * @param index Index
+	 * 
+	 * @return String
+	 */
+	private static String arg(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("Missing argument " + index);
+		}
+
+		return args[index];
+	}
+
+	/**
+	 * Split Line Into Arguments
+	 * 
+	 * @param line Line
+	 * 
+	 * @return String[]
+	 */
+	static String[] tokenize(String line) {
+		List<String> tokens = new ArrayList<String>();
+		StringBuilder token = null;
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+
+			if (c == '"') {
+				quoted = !quoted;
+
+				if (token == null) {
+					token = new StringBuilder();
+				}
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (token != null) {
+					tokens.add(token.toString());
+					token = null;
+				}
+			} else {
+				if (token == null) {
+					token = new StringBuilder();
+				}
+
+				token.append(c);
+			}
+		}
+
+		if (token != null) {
+			tokens.add(token.toString());
+		}
+
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Main
+	 * 
+	 * @param args Script Files
+	 */
+	public static void main(String[] args) {
+		SecurityUtil.getInstance().addProvider(new BouncyCastleProvider());
+		BatchTool tool = new BatchTool(System.out);
+
+		try {
+			if (args.length == 0) {
+				tool.run(new InputStreamReader(System.in));
+			}
+
+			for (int i = 0; i < args.length; i++) {
+				Reader reader = new FileReader(args[i]);
+
+				try {
+					tool.run(reader);
+				} finally {
+					reader.close();
+				}
+			}
+		} catch (Exception err) {
+			System.err.println(err.getMessage());
+			System.exit(1);
+		}
+
+		System.exit(0);
+	}
+}
@@ -35,6 +35,9 @@ import sun.security.x509.AlgorithmId;
 import sun.security.x509.X500Name;
 import sun.security.x509.X509CertInfo;
 
+import com.jlocksmith.util.KeyUtil;
+import com.jlocksmith.util.SignatureUtil;
+
 /**
  * Block
  * 
@@ -79,17 +82,31 @@ public class Block {
 
 		String keyAlgorithm = privateKey.getAlgorithm();
 		String digestAlgorithm;
+		String signatureAlgorithm;
+		String extension = keyAlgorithm;
 
 		if (keyAlgorithm.equalsIgnoreCase("DSA")) {
 			digestAlgorithm = "SHA1";
+			signatureAlgorithm = digestAlgorithm + "with" + keyAlgorithm;
 		} else if (keyAlgorithm.equalsIgnoreCase("RSA")) {
 			digestAlgorithm = "MD5";
+			signatureAlgorithm = digestAlgorithm + "with" + keyAlgorithm;
+		} else if (KeyUtil.isEc(keyAlgorithm)) {
+			keyAlgorithm = KeyUtil.EC;
+			extension = KeyUtil.EC;
+			digestAlgorithm = "SHA256";
+			signatureAlgorithm = SignatureUtil.ECDSA_SHA256;
+		} else if (KeyUtil.isEdDsa(keyAlgorithm)) {
+			// Pure EdDSA signs the content itself, SHA-512 per RFC 8419
+			keyAlgorithm = KeyUtil.ED25519;
+			extension = KeyUtil.EC;
+			digestAlgorithm = "SHA512";
+			signatureAlgorithm = SignatureUtil.ED25519;
 		} else {
-			throw new NoSuchAlgorithmException();
+			throw new NoSuchAlgorithmException(keyAlgorithm);
 		}
 
-		String signatureAlgorithm = digestAlgorithm + "with" + keyAlgorithm;
-		blockFileName = "META-INF/" + sfg.getBaseName() + "." + keyAlgorithm;
+		blockFileName = "META-INF/" + sfg.getBaseName() + "." + extension;
 
 		AlgorithmId digestAlg  = AlgorithmId.get(digestAlgorithm);
 		AlgorithmId digEncrAlg = AlgorithmId.get(keyAlgorithm);
@@ -0,0 +1,757 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStoreException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+
+import com.jlocksmith.util.CertificateReader;
+import com.jlocksmith.util.CertificateUtil;
+import com.jlocksmith.util.TrustIndex;
+
+/**
+ * Bulk Certificate Importer. Walks a directory tree or a ZIP archive, parses
+ * the certificate files on a pool of worker threads, skips certificates
+ * already in the key store or seen earlier in the import, names the entries
+ * with an alias template and commits them as one batch. Failures are
+ * collected in the result instead of being reported one by one.
+ * 
+ * <p>
+ * The alias template may contain these placeholders:
+ * 
+ * <pre>
+ * {file}   file name without extension
+ * {n}      position of the certificate in its file, starting at 1
+ * {cn}     subject common name, or the file name if there is none
+ * {serial} serial number in hex
+ * {sha1}   SHA-1 fingerprint in hex
+ * </pre>
+ * 
+ * Aliases already in use get a numeric suffix.
+ * 
+ * @author Derek Helbert
+ */
+public class BulkImporter {
+
+	/** Default Alias Template */
+	public static final String DEFAULT_TEMPLATE = "{file}";
+
+	/** Certificate File Extensions */
+	public static final String[] CERT_EXTENSIONS = { ".cer", ".crt", ".pem",
+			".der", ".p7b", ".p7c" };
+
+	/** Archive File Extensions */
+	public static final String[] ARCHIVE_EXTENSIONS = { ".zip", ".jar" };
+
+	/** Key Store Manager */
+	private KeystoreManager manager;
+
+	/** Alias Template */
+	private String template = DEFAULT_TEMPLATE;
+
+	/** Additional Trust Indexes */
+	private TrustIndex[] trustIndexes = new TrustIndex[0];
+
+	/** Skip Certificates Without A Trust Path */
+	private boolean requireTrust = false;
+
+	/** Number Of Worker Threads */
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public BulkImporter(KeystoreManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Set Alias Template
+	 * 
+	 * @param template Alias Template
+	 */
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	/**
+	 * Set Additional Trust Indexes, e.g. of the CA certs key store
+	 * 
+	 * @param trustIndexes Trust Indexes
+	 */
+	public void setTrustIndexes(TrustIndex[] trustIndexes) {
+		this.trustIndexes = trustIndexes.clone();
+	}
+
+	/**
+	 * Set Require Trust. When set certificates without a trust path are not
+	 * imported, otherwise they are imported and listed as untrusted.
+	 * 
+	 * @param requireTrust Require Trust
+	 */
+	public void setRequireTrust(boolean requireTrust) {
+		this.requireTrust = requireTrust;
+	}
+
+	/**
+	 * Set Number Of Worker Threads
+	 * 
+	 * @param threads Threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Is Certificate File
+	 * 
+	 * @param name File Name
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isCertificateFile(String name) {
+		return extension(name, CERT_EXTENSIONS) != null;
+	}
+
+	/**
+	 * Import Certificates Of A Directory Tree, Archive Or Single File
+	 * 
+	 * @param source Source File
+	 * 
+	 * @return Result
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 */
+	public Result importCertificates(File source) throws IOException,
+			KeyStoreException {
+		List<Source> sources = new ArrayList<Source>();
+		ZipFile zip = null;
+
+		try {
+			if (source.isDirectory()) {
+				walk(source, sources);
+			} else if (extension(source.getName(), ARCHIVE_EXTENSIONS) != null) {
+				zip = new ZipFile(source);
+
+				for (Enumeration<? extends ZipEntry> en = zip.entries(); en
+						.hasMoreElements();) {
+					ZipEntry entry = en.nextElement();
+
+					if (!entry.isDirectory() && isCertificateFile(entry.getName())) {
+						sources.add(new Source(zip, entry));
+					}
+				}
+			} else if (source.isFile()) {
+				sources.add(new Source(source));
+			} else {
+				throw new IOException("Not found " + source);
+			}
+
+			return importSources(sources);
+		} finally {
+			if (zip != null) {
+				zip.close();
+			}
+		}
+	}
+
+	/**
+	 * Import Parsed Sources
+	 * 
+	 * @param sources Sources
+	 * 
+	 * @return Result
+	 * 
+	 * @throws KeyStoreException
+	 */
+	private Result importSources(List<Source> sources)
+			throws KeyStoreException {
+		Result result = new Result(sources.size());
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "jlocksmith-import");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		try {
+			List<Future<Parsed[]>> parsing = new ArrayList<Future<Parsed[]>>(sources.size());
+
+			for (int i = 0; i < sources.size(); i++) {
+				parsing.add(pool.submit(sources.get(i)));
+			}
+
+			// Existing entries
+			FingerprintIndex fingerprints = manager.syncFingerprintIndex();
+			Set<String> aliases = new HashSet<String>();
+			TrustIndex storeIndex = new TrustIndex();
+			List<String> existing = manager.getAliases();
+
+			for (int i = 0; i < existing.size(); i++) {
+				String alias = existing.get(i);
+				aliases.add(alias.toLowerCase());
+
+				if (manager.isCertificateEntry(alias)) {
+					try {
+						storeIndex.add(CertificateUtil.convertCertificate(manager
+								.getCertificate(alias)));
+					} catch (Exception err) {
+						err.printStackTrace();
+					}
+				}
+			}
+
+			// Dedupe in source order so aliases do not depend on scheduling
+			Map<String, String> known = new HashMap<String, String>();
+			List<Parsed> unique = new ArrayList<Parsed>();
+			TrustIndex importIndex = new TrustIndex();
+
+			for (int i = 0; i < parsing.size(); i++) {
+				Parsed[] parsed = get(parsing.get(i), sources.get(i), result);
+
+				for (int j = 0; j < parsed.length; j++) {
+					List<String> stored = fingerprints.find(parsed[j].sha256);
+					String other = stored.isEmpty() ? known
+							.get(parsed[j].sha256) : stored.get(0);
+
+					if (other != null) {
+						result.duplicates.add(parsed[j].source + ": " + other);
+						continue;
+					}
+
+					known.put(parsed[j].sha256, parsed[j].source);
+					unique.add(parsed[j]);
+
+					// Imported roots are no trust anchors
+					if (!CertificateUtil.isSelfIssued(parsed[j].cert)) {
+						importIndex.add(parsed[j].cert);
+					}
+				}
+			}
+
+			// Trust paths
+			final TrustIndex[] indexes = new TrustIndex[trustIndexes.length + 2];
+			indexes[0] = storeIndex;
+			indexes[1] = importIndex;
+			System.arraycopy(trustIndexes, 0, indexes, 2, trustIndexes.length);
+
+			List<Future<Boolean>> trust = new ArrayList<Future<Boolean>>(unique.size());
+
+			for (int i = 0; i < unique.size(); i++) {
+				final X509Certificate cert = unique.get(i).cert;
+
+				trust.add(pool.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return Boolean.valueOf(CertificateUtil.establishTrust(
+								indexes, cert) != null);
+					}
+				}));
+			}
+
+			List<String> names = new ArrayList<String>(unique.size());
+			List<X509Certificate> certs = new ArrayList<X509Certificate>(unique.size());
+
+			for (int i = 0; i < unique.size(); i++) {
+				Parsed parsed = unique.get(i);
+				boolean trusted;
+
+				try {
+					trusted = trust.get(i).get().booleanValue();
+				} catch (Exception err) {
+					trusted = false;
+				}
+
+				if (!trusted) {
+					if (requireTrust) {
+						result.failures.add(parsed.source + ": untrusted");
+						continue;
+					}
+
+					result.untrusted.add(parsed.source);
+				}
+
+				String alias = unique(expand(parsed), aliases);
+				aliases.add(alias.toLowerCase());
+				names.add(alias);
+				certs.add(parsed.cert);
+			}
+
+			result.imported.addAll(commit(names, certs));
+
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Commit Entries As One Batch. Aliases taken by entries added while the
+	 * sources were parsed are made unique again, so no entry is overwritten.
+	 * 
+	 * @param names Aliases
+	 * @param certs Certificates
+	 * 
+	 * @return List Aliases Committed
+	 * 
+	 * @throws KeyStoreException
+	 */
+	private List<String> commit(List<String> names, List<X509Certificate> certs)
+			throws KeyStoreException {
+		if (names.isEmpty()) {
+			return names;
+		}
+
+		manager.beginBatch();
+		boolean committed = false;
+
+		try {
+			Set<String> taken = new HashSet<String>();
+			List<String> existing = manager.getAliases();
+
+			for (int i = 0; i < existing.size(); i++) {
+				taken.add(existing.get(i).toLowerCase());
+			}
+
+			List<String> committing = new ArrayList<String>(names.size());
+
+			for (int i = 0; i < names.size(); i++) {
+				String alias = unique(names.get(i), taken);
+
+				taken.add(alias.toLowerCase());
+				committing.add(alias);
+				manager.setCertificateEntry(alias, certs.get(i));
+			}
+
+			manager.commit();
+			committed = true;
+
+			return committing;
+		} finally {
+			if (!committed) {
+				manager.rollback();
+			}
+		}
+	}
+
+	/**
+	 * Get Parsed Certificates Of A Source
+	 * 
+	 * @param future Parse Task
+	 * @param source Source
+	 * @param result Result For Failures
+	 * 
+	 * @return Parsed[]
+	 */
+	private static Parsed[] get(Future<Parsed[]> future, Source source,
+			Result result) {
+		try {
+			return future.get();
+		} catch (ExecutionException err) {
+			Throwable cause = err.getCause() == null ? err : err.getCause();
+			result.failures.add(source.name + ": " + cause.getMessage());
+		} catch (InterruptedException err) {
+			Thread.currentThread().interrupt();
+			result.failures.add(source.name + ": interrupted");
+		}
+
+		return new Parsed[0];
+	}
+
+	/**
+	 * Expand Alias Template
+	 * 
+	 * @param parsed Parsed Certificate
+	 * 
+	 * @return String
+	 */
+	private String expand(Parsed parsed) {
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+
+		while (i < template.length()) {
+			char c = template.charAt(i);
+			int end = c == '{' ? template.indexOf('}', i) : -1;
+
+			if (end == -1) {
+				sb.append(c);
+				i++;
+				continue;
+			}
+
+			String name = template.substring(i + 1, end);
+			String value;
+
+			if ("file".equals(name)) {
+				value = parsed.base;
+			} else if ("n".equals(name)) {
+				value = String.valueOf(parsed.index + 1);
+			} else if ("cn".equals(name)) {
+				value = commonName(parsed.cert.getSubjectX500Principal());
+				value = value == null ? parsed.base : value;
+			} else if ("serial".equals(name)) {
+				value = parsed.cert.getSerialNumber().toString(16);
+			} else if ("sha1".equals(name)) {
+				value = parsed.sha1;
+			} else {
+				value = template.substring(i, end + 1);
+			}
+
+			sb.append(value);
+			i = end + 1;
+		}
+
+		String alias = sb.toString().trim().toLowerCase();
+
+		return alias.length() == 0 ? parsed.sha1 : alias;
+	}
+
+	/**
+	 * Make Alias Unique
+	 * 
+	 * @param alias Alias
+	 * @param aliases Aliases In Use, Lower Case
+	 * 
+	 * @return String
+	 */
+	private static String unique(String alias, Set<String> aliases) {
+		if (!aliases.contains(alias.toLowerCase())) {
+			return alias;
+		}
+
+		int n = 1;
+
+		while (aliases.contains((alias + "-" + n).toLowerCase())) {
+			n++;
+		}
+
+		return alias + "-" + n;
+	}
+
+	/**
+	 * Walk Directory Tree
+	 * 
+	 * @param dir Directory
+	 * @param sources Sources Found
+	 */
+	private static void walk(File dir, List<Source> sources) {
+		File[] files = dir.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		Arrays.sort(files);
+
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].isDirectory()) {
+				walk(files[i], sources);
+			} else if (isCertificateFile(files[i].getName())) {
+				sources.add(new Source(files[i]));
+			}
+		}
+	}
+
+	/**
+	 * Get Matching Extension
+	 * 
+	 * @param name File Name
+	 * @param extensions Extensions
+	 * 
+	 * @return String or null
+	 */
+	private static String extension(String name, String[] extensions) {
+		String lower = name.toLowerCase();
+
+		for (int i = 0; i < extensions.length; i++) {
+			if (lower.endsWith(extensions[i])) {
+				return extensions[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get Common Name
+	 * 
+	 * @param principal Principal
+	 * 
+	 * @return String or null
+	 */
+	private static String commonName(X500Principal principal) {
+		try {
+			List<Rdn> rdns = new LdapName(principal.getName()).getRdns();
+
+			// Most specific name comes last
+			for (int i = rdns.size() - 1; i >= 0; i--) {
+				if ("CN".equalsIgnoreCase(rdns.get(i).getType())) {
+					return rdns.get(i).getValue().toString();
+				}
+			}
+		} catch (InvalidNameException err) {
+			err.printStackTrace();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Certificate File Or Archive Entry
+	 * 
+	 */
+	private static class Source implements Callable<Parsed[]> {
+
+		/** Display Name */
+		final String name;
+
+		/** Alias Base */
+		final String base;
+
+		/** File */
+		final File file;
+
+		/** Archive */
+		final ZipFile zip;
+
+		/** Archive Entry */
+		final ZipEntry entry;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param file File
+		 */
+		Source(File file) {
+			this.name = file.getPath();
+			this.base = base(file.getName());
+			this.file = file;
+			this.zip = null;
+			this.entry = null;
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param zip Archive
+		 * @param entry Archive Entry
+		 */
+		Source(ZipFile zip, ZipEntry entry) {
+			this.name = entry.getName();
+			this.base = base(new File(entry.getName()).getName());
+			this.file = null;
+			this.zip = zip;
+			this.entry = entry;
+		}
+
+		/**
+		 * Parse Certificates
+		 * 
+		 * @return Parsed[]
+		 * 
+		 * @throws Exception
+		 */
+		public Parsed[] call() throws Exception {
+			InputStream in = zip == null ? new FileInputStream(file)
+					: zip.getInputStream(entry);
+			CertificateReader reader = new CertificateReader(in);
+			List<Parsed> parsed = new ArrayList<Parsed>(1);
+
+			try {
+				for (X509Certificate cert = reader.read(); cert != null; cert = reader
+						.read()) {
+					parsed.add(new Parsed(this, parsed.size(), cert));
+				}
+			} finally {
+				reader.close();
+			}
+
+			if (parsed.isEmpty()) {
+				throw new IOException("No certificate found");
+			}
+
+			return parsed.toArray(new Parsed[parsed.size()]);
+		}
+
+		/**
+		 * Get Alias Base Of File Name
+		 * 
+		 * @param name File Name
+		 * 
+		 * @return String
+		 */
+		private static String base(String name) {
+			String ext = extension(name, CERT_EXTENSIONS);
+
+			return ext == null ? name : name.substring(0, name.length()
+					- ext.length());
+		}
+	}
+
+	/**
+	 * Parsed Certificate
+	 * 
+	 */
+	private static class Parsed {
+
+		/** Source Name */
+		final String source;
+
+		/** Alias Base */
+		final String base;
+
+		/** Position In Source */
+		final int index;
+
+		/** Certificate */
+		final X509Certificate cert;
+
+		/** SHA-1 Fingerprint */
+		final String sha1;
+
+		/** SHA-256 Fingerprint */
+		final String sha256;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param source Source
+		 * @param index Position In Source
+		 * @param cert Certificate
+		 * 
+		 * @throws Exception
+		 */
+		Parsed(Source source, int index, X509Certificate cert) throws Exception {
+			this.source = index == 0 ? source.name : source.name + "#"
+					+ (index + 1);
+			this.base = source.base;
+			this.index = index;
+			this.cert = cert;
+			this.sha1 = FingerprintIndex.getFingerprint(FingerprintIndex.SHA1,
+					cert);
+			this.sha256 = FingerprintIndex.getFingerprint(
+					FingerprintIndex.SHA256, cert);
+		}
+	}
+
+	/**
+	 * Import Result
+	 * 
+	 */
+	public static class Result {
+
+		/** Number Of Files Read */
+		private final int files;
+
+		/** Imported Aliases */
+		private final List<String> imported = new ArrayList<String>();
+
+		/** Duplicates With The Entry Or Source They Duplicate */
+		private final List<String> duplicates = new ArrayList<String>();
+
+		/** Sources Imported Without A Trust Path */
+		private final List<String> untrusted = new ArrayList<String>();
+
+		/** Failures */
+		private final List<String> failures = new ArrayList<String>();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param files Number Of Files
+		 */
+		Result(int files) {
+			this.files = files;
+		}
+
+		/**
+		 * Get Number Of Files Read
+		 * 
+		 * @return int
+		 */
+		public int getFiles() {
+			return files;
+		}
+
+		/**
+		 * Get Imported Aliases
+		 * 
+		 * @return List
+		 */
+		public List<String> getImported() {
+			return Collections.unmodifiableList(imported);
+		}
+
+		/**
+		 * Get Duplicates
+		 * 
+		 * @return List
+		 */
+		public List<String> getDuplicates() {
+			return Collections.unmodifiableList(duplicates);
+		}
+
+		/**
+		 * Get Untrusted Sources
+		 * 
+		 * @return List
+		 */
+		public List<String> getUntrusted() {
+			return Collections.unmodifiableList(untrusted);
+		}
+
+		/**
+		 * Get Failures
+		 * 
+		 * @return List
+		 */
+		public List<String> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+	}
+}
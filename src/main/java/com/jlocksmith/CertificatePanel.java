@@ -19,6 +19,7 @@ package com.jlocksmith;
 
 import java.awt.GridLayout;
 import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
 
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -77,23 +78,32 @@ public class CertificatePanel extends JPanel implements ValidatedForm {
 	 * @param keyPair KeyPair
 	 */
 	public CertificatePanel(KeyPair keyPair) {
+		this(keyPair.getPrivate().getAlgorithm());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param keyAlgorithm Key Algorithm
+	 */
+	public CertificatePanel(String keyAlgorithm) {
 		super();
-		init(keyPair);
+		init(keyAlgorithm);
 	}
 
 	/**
 	 * Init
 	 * 
-	 * @param keyPair KeyPair
+	 * @param keyAlgorithm Key Algorithm
 	 */
-	private void init(KeyPair keyPair) {
+	private void init(String keyAlgorithm) {
 		setLayout(new GridLayout(9, 2, 5, 5));
 
 		String[] algs = null;
 
-		if (KeyUtil.DSA.equals(keyPair.getPrivate().getAlgorithm())) {
-			algs = SignatureUtil.getDsaSignatureTypes();
-		} else {
+		try {
+			algs = SignatureUtil.getSignatureTypes(keyAlgorithm);
+		} catch (NoSuchAlgorithmException err) {
 			algs = SignatureUtil.getRsaSignatureTypes();
 		}
 
@@ -133,6 +143,15 @@ public class CertificatePanel extends JPanel implements ValidatedForm {
 		return valField.getText();
 	}
 
+	/**
+	 * Set Common Name
+	 * 
+	 * @param commonName Common Name
+	 */
+	public void setCommonName(String commonName) {
+		cnField.setText(commonName);
+	}
+
 	/**
 	 * Get Common Name
 	 * 
@@ -0,0 +1,388 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Certificate Expiry Index. Keeps every certificate of the key store, including
+ * each position of key pair chains, sorted by not after date so the entries
+ * expiring before a date are found with one ordered lookup. When created for a
+ * key store manager the index follows its keystore events on the background
+ * event thread, otherwise it is filled with add.
+ * 
+ * @author Derek Helbert
+ */
+public class ExpiryIndex implements KeystoreListener {
+
+	/** Milliseconds Per Day */
+	public static final long DAY = 24L * 60 * 60 * 1000;
+
+	/** Key Store Manager */
+	private KeystoreManager manager;
+
+	/** Entries Sorted By Not After */
+	private TreeSet<Entry> entries = new TreeSet<Entry>();
+
+	/** Entries By Alias */
+	private Map<String, Entry[]> byAlias = new HashMap<String, Entry[]>();
+
+	/**
+	 * Constructor For An Index Filled With add
+	 * 
+	 */
+	public ExpiryIndex() {
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public ExpiryIndex(KeystoreManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Get Entries Expiring Before A Date, Earliest First
+	 * 
+	 * @param date Date
+	 * 
+	 * @return List
+	 */
+	public synchronized List<Entry> getExpiring(Date date) {
+		return new ArrayList<Entry>(entries.headSet(new Entry("", -1, date
+				.getTime(), null)));
+	}
+
+	/**
+	 * Get Entries Expiring Within A Number Of Days, Including Expired Ones
+	 * 
+	 * @param days Days From Now
+	 * 
+	 * @return List
+	 */
+	public List<Entry> getExpiringWithin(int days) {
+		return getExpiring(new Date(System.currentTimeMillis() + days * DAY));
+	}
+
+	/**
+	 * Get Entry Expiring First
+	 * 
+	 * @return Entry or null if the index is empty
+	 */
+	public synchronized Entry getFirst() {
+		return entries.isEmpty() ? null : entries.first();
+	}
+
+	/**
+	 * Get Size
+	 * 
+	 * @return int
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Add All Entries Of A Key Store
+	 * 
+	 * @param keyStore Key Store
+	 * 
+	 * @throws KeyStoreException
+	 */
+	public void add(KeyStore keyStore) throws KeyStoreException {
+		for (Enumeration<String> en = keyStore.aliases(); en.hasMoreElements();) {
+			String alias = en.nextElement();
+
+			if (keyStore.isCertificateEntry(alias)) {
+				put(alias, new Certificate[] { keyStore.getCertificate(alias) });
+			} else {
+				put(alias, keyStore.getCertificateChain(alias));
+			}
+		}
+	}
+
+	/**
+	 * Put Entry, Replacing Any Earlier Certificates Of The Alias
+	 * 
+	 * @param alias Alias
+	 * @param chain Certificate Chain or null
+	 */
+	public synchronized void put(String alias, Certificate[] chain) {
+		remove(alias);
+
+		if (chain == null) {
+			return;
+		}
+
+		List<Entry> added = new ArrayList<Entry>(chain.length);
+
+		for (int i = 0; i < chain.length; i++) {
+			if (chain[i] instanceof X509Certificate) {
+				X509Certificate cert = (X509Certificate) chain[i];
+				Entry entry = new Entry(alias, i, cert.getNotAfter().getTime(),
+						cert.getSubjectX500Principal().getName());
+				entries.add(entry);
+				added.add(entry);
+			}
+		}
+
+		if (!added.isEmpty()) {
+			byAlias.put(alias, added.toArray(new Entry[added.size()]));
+		}
+	}
+
+	/**
+	 * Remove Alias
+	 * 
+	 * @param alias Alias
+	 */
+	public synchronized void remove(String alias) {
+		Entry[] old = byAlias.remove(alias);
+
+		if (old != null) {
+			for (int i = 0; i < old.length; i++) {
+				entries.remove(old[i]);
+			}
+		}
+	}
+
+	/**
+	 * Clear
+	 * 
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		byAlias.clear();
+	}
+
+	/**
+	 * Rebuild From The Key Store Manager
+	 * 
+	 */
+	public void rebuild() {
+		List<String> aliases;
+
+		try {
+			aliases = manager.getAliases();
+		} catch (Exception err) {
+			aliases = Collections.emptyList();
+		}
+
+		synchronized (this) {
+			clear();
+
+			for (int i = 0; i < aliases.size(); i++) {
+				refresh(aliases.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Refresh One Alias From The Key Store Manager
+	 * 
+	 * @param alias Alias
+	 */
+	public void refresh(String alias) {
+		Certificate[] chain = null;
+
+		try {
+			if (manager.isCertificateEntry(alias)) {
+				chain = new Certificate[] { manager.getCertificate(alias) };
+			} else if (manager.containsAlias(alias)) {
+				chain = manager.getCertificateChain(alias);
+			}
+		} catch (Exception err) {
+			err.printStackTrace();
+		}
+
+		put(alias, chain);
+	}
+
+	/**
+	 * Entry Imported
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void entryImported(KeystoreEvent evt) {
+		refresh(evt);
+	}
+
+	/**
+	 * Entry Deleted
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void entryDeleted(KeystoreEvent evt) {
+		refresh(evt);
+	}
+
+	/**
+	 * Key Store Loaded
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void keyStoreLoaded(KeystoreEvent evt) {
+		rebuild();
+	}
+
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void keyStoreSaved(KeystoreEvent evt) {
+	}
+
+	/**
+	 * Refresh Aliases Of An Event
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void refresh(KeystoreEvent evt) {
+		String[] aliases = evt.getAliases();
+
+		if (aliases == null) {
+			rebuild();
+			return;
+		}
+
+		for (int i = 0; i < aliases.length; i++) {
+			refresh(aliases[i]);
+		}
+	}
+
+	/**
+	 * Expiring Certificate
+	 * 
+	 */
+	public static final class Entry implements Comparable<Entry> {
+
+		/** Alias */
+		private final String alias;
+
+		/** Position In The Chain */
+		private final int position;
+
+		/** Not After */
+		private final long notAfter;
+
+		/** Subject */
+		private final String subject;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param alias Alias
+		 * @param position Position In The Chain
+		 * @param notAfter Not After
+		 * @param subject Subject
+		 */
+		Entry(String alias, int position, long notAfter, String subject) {
+			this.alias = alias;
+			this.position = position;
+			this.notAfter = notAfter;
+			this.subject = subject;
+		}
+
+		/**
+		 * Get Alias
+		 * 
+		 * @return String
+		 */
+		public String getAlias() {
+			return alias;
+		}
+
+		/**
+		 * Get Position In The Chain, 0 For The Entry Certificate
+		 * 
+		 * @return int
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		/**
+		 * Get Not After
+		 * 
+		 * @return Date
+		 */
+		public Date getNotAfter() {
+			return new Date(notAfter);
+		}
+
+		/**
+		 * Get Subject
+		 * 
+		 * @return String
+		 */
+		public String getSubject() {
+			return subject;
+		}
+
+		/**
+		 * Compare By Not After, Alias And Position
+		 * 
+		 * @param other Other Entry
+		 * 
+		 * @return int
+		 */
+		public int compareTo(Entry other) {
+			if (notAfter != other.notAfter) {
+				return notAfter < other.notAfter ? -1 : 1;
+			}
+
+			int c = alias.compareTo(other.alias);
+
+			return c != 0 ? c : position - other.position;
+		}
+
+		/**
+		 * Equals
+		 * 
+		 * @param o Object
+		 * 
+		 * @return boolean
+		 */
+		public boolean equals(Object o) {
+			return o instanceof Entry && compareTo((Entry) o) == 0;
+		}
+
+		/**
+		 * Hash Code
+		 * 
+		 * @return int
+		 */
+		public int hashCode() {
+			return alias.hashCode() * 31 + position;
+		}
+	}
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.File;
+import java.security.KeyStore;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.jlocksmith.util.KeyUtil;
+import com.jlocksmith.util.SecurityUtil;
+
+/**
+ * Expiry Scanner. Sweeps any number of key store files in parallel for
+ * certificates expiring within a number of days and reports them in one list
+ * ordered by not after date. Scans may run once or on a schedule.
+ * 
+ * @author Derek Helbert
+ */
+public class ExpiryScanner {
+
+	/** Key Stores To Scan */
+	private List<Target> targets = new CopyOnWriteArrayList<Target>();
+
+	/** Scan Pool */
+	private ExecutorService pool;
+
+	/** Schedule Timer */
+	private ScheduledExecutorService timer = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "jlocksmith-scan-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public ExpiryScanner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param threads Number Of Scan Threads
+	 */
+	public ExpiryScanner(int threads) {
+		pool = Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "jlocksmith-scan");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Add Key Store File
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * @param type Key Store Type or null to use the file extension
+	 */
+	public void addKeyStore(String path, String password, String type) {
+		if (type == null) {
+			type = getType(path);
+		}
+
+		targets.add(new Target(path, password, type));
+	}
+
+	/**
+	 * Add The Key Store Files Of A Directory Tree Sharing One Password
+	 * 
+	 * @param dir Directory
+	 * @param password Password
+	 * 
+	 * @return Number Of Key Stores Added
+	 */
+	public int addDirectory(File dir, String password) {
+		File[] files = dir.listFiles();
+		int count = 0;
+
+		if (files == null) {
+			return 0;
+		}
+
+		Arrays.sort(files);
+
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].isDirectory()) {
+				count += addDirectory(files[i], password);
+			} else if (getExtensionType(files[i].getName()) != null) {
+				addKeyStore(files[i].getPath(), password, null);
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Scan All Key Stores
+	 * 
+	 * @param days Days From Now
+	 * 
+	 * @return Report
+	 */
+	public Report scan(int days) {
+		final Date limit = new Date(System.currentTimeMillis() + days
+				* ExpiryIndex.DAY);
+		List<Target> scanning = new ArrayList<Target>(targets);
+		List<Future<List<ExpiryIndex.Entry>>> futures = new ArrayList<Future<List<ExpiryIndex.Entry>>>(scanning.size());
+
+		for (int i = 0; i < scanning.size(); i++) {
+			final Target target = scanning.get(i);
+
+			futures.add(pool.submit(new Callable<List<ExpiryIndex.Entry>>() {
+				public List<ExpiryIndex.Entry> call() throws Exception {
+					return target.scan(limit);
+				}
+			}));
+		}
+
+		Report report = new Report(limit, scanning.size());
+
+		for (int i = 0; i < futures.size(); i++) {
+			String path = scanning.get(i).path;
+
+			try {
+				List<ExpiryIndex.Entry> entries = futures.get(i).get();
+
+				for (int j = 0; j < entries.size(); j++) {
+					report.items.add(new Item(path, entries.get(j)));
+				}
+			} catch (ExecutionException err) {
+				Throwable cause = err.getCause() == null ? err : err.getCause();
+				report.failures.add(path + ": " + cause.getMessage());
+			} catch (InterruptedException err) {
+				Thread.currentThread().interrupt();
+				report.failures.add(path + ": interrupted");
+			}
+		}
+
+		Collections.sort(report.items);
+
+		return report;
+	}
+
+	/**
+	 * Scan On A Schedule
+	 * 
+	 * @param days Days From Now
+	 * @param period Period Between Scans
+	 * @param unit Period Unit
+	 * @param listener Listener Called With Each Report On The Timer Thread
+	 * 
+	 * @return ScheduledFuture to cancel the scans
+	 */
+	public ScheduledFuture<?> schedule(final int days, long period,
+			TimeUnit unit, final Listener listener) {
+		return timer.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					listener.scanned(scan(days));
+				} catch (RuntimeException err) {
+					err.printStackTrace();
+				}
+			}
+		}, 0, period, unit);
+	}
+
+	/**
+	 * Shutdown Scan Threads
+	 * 
+	 */
+	public void shutdown() {
+		timer.shutdownNow();
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Get Key Store Type From File Extension
+	 * 
+	 * @param path File Path
+	 * 
+	 * @return String
+	 */
+	private static String getType(String path) {
+		String type = getExtensionType(path);
+
+		return type == null ? KeyStore.getDefaultType() : type;
+	}
+
+	/**
+	 * Get Key Store Type Of A Known File Extension
+	 * 
+	 * @param name File Name
+	 * 
+	 * @return String or null
+	 */
+	private static String getExtensionType(String name) {
+		int dot = name.lastIndexOf('.');
+
+		if (dot == -1) {
+			return null;
+		}
+
+		Map<String, String> types = SecurityUtil.getInstance()
+				.getFileKeystoreMap();
+
+		return types.get(name.substring(dot).toLowerCase());
+	}
+
+	/**
+	 * Scan Listener
+	 * 
+	 */
+	public interface Listener {
+
+		/**
+		 * Scan Finished
+		 * 
+		 * @param report Report
+		 */
+		public void scanned(Report report);
+	}
+
+	/**
+	 * Key Store File
+	 * 
+	 */
+	private static class Target {
+
+		/** File Path */
+		final String path;
+
+		/** Password */
+		final String password;
+
+		/** Key Store Type */
+		final String type;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param path File Path
+		 * @param password Password
+		 * @param type Key Store Type
+		 */
+		Target(String path, String password, String type) {
+			this.path = path;
+			this.password = password;
+			this.type = type;
+		}
+
+		/**
+		 * Scan Key Store
+		 * 
+		 * @param limit Expiry Limit
+		 * 
+		 * @return List
+		 * 
+		 * @throws Exception
+		 */
+		List<ExpiryIndex.Entry> scan(Date limit) throws Exception {
+			String prov = SecurityUtil.getInstance().getKeystoreProviderName(
+					type);
+			KeyStore keyStore = prov == null ? KeyStore.getInstance(type)
+					: KeyStore.getInstance(type, prov);
+			KeyUtil.loadKeyStore(keyStore, path, password);
+
+			ExpiryIndex index = new ExpiryIndex();
+			index.add(keyStore);
+
+			return index.getExpiring(limit);
+		}
+	}
+
+	/**
+	 * Expiring Certificate Of A Key Store File
+	 * 
+	 */
+	public static final class Item implements Comparable<Item> {
+
+		/** File Path */
+		private final String path;
+
+		/** Index Entry */
+		private final ExpiryIndex.Entry entry;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param path File Path
+		 * @param entry Index Entry
+		 */
+		Item(String path, ExpiryIndex.Entry entry) {
+			this.path = path;
+			this.entry = entry;
+		}
+
+		/**
+		 * Get File Path
+		 * 
+		 * @return String
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Get Index Entry
+		 * 
+		 * @return ExpiryIndex.Entry
+		 */
+		public ExpiryIndex.Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * Compare By Not After, Then Path
+		 * 
+		 * @param other Other Item
+		 * 
+		 * @return int
+		 */
+		public int compareTo(Item other) {
+			int c = entry.compareTo(other.entry);
+
+			return c != 0 ? c : path.compareTo(other.path);
+		}
+
+		/**
+		 * Equals
+		 * 
+		 * @param o Object
+		 * 
+		 * @return boolean
+		 */
+		public boolean equals(Object o) {
+			return o instanceof Item && compareTo((Item) o) == 0;
+		}
+
+		/**
+		 * Hash Code
+		 * 
+		 * @return int
+		 */
+		public int hashCode() {
+			return entry.hashCode() * 31 + path.hashCode();
+		}
+	}
+
+	/**
+	 * Scan Report
+	 * 
+	 */
+	public static class Report {
+
+		/** Expiry Limit */
+		private final Date limit;
+
+		/** Number Of Key Stores Scanned */
+		private final int keyStores;
+
+		/** Expiring Certificates */
+		private final List<Item> items = new ArrayList<Item>();
+
+		/** Failures */
+		private final List<String> failures = new ArrayList<String>();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param limit Expiry Limit
+		 * @param keyStores Number Of Key Stores
+		 */
+		Report(Date limit, int keyStores) {
+			this.limit = limit;
+			this.keyStores = keyStores;
+		}
+
+		/**
+		 * Get Expiry Limit
+		 * 
+		 * @return Date
+		 */
+		public Date getLimit() {
+			return (Date) limit.clone();
+		}
+
+		/**
+		 * Get Number Of Key Stores Scanned
+		 * 
+		 * @return int
+		 */
+		public int getKeyStores() {
+			return keyStores;
+		}
+
+		/**
+		 * Get Expiring Certificates, Earliest First
+		 * 
+		 * @return List
+		 */
+		public List<Item> getItems() {
+			return Collections.unmodifiableList(items);
+		}
+
+		/**
+		 * Get Failures
+		 * 
+		 * @return List
+		 */
+		public List<String> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+
+		/**
+		 * Report As Text, One Certificate Per Line
+		 * 
+		 * @return String
+		 */
+		public String toString() {
+			DateFormat format = DateFormat.getDateTimeInstance();
+			StringBuilder sb = new StringBuilder();
+
+			for (int i = 0; i < items.size(); i++) {
+				Item item = items.get(i);
+				ExpiryIndex.Entry entry = item.getEntry();
+				sb.append(format.format(entry.getNotAfter())).append('\t');
+				sb.append(item.getPath()).append('\t');
+				sb.append(entry.getAlias());
+
+				if (entry.getPosition() > 0) {
+					sb.append('[').append(entry.getPosition()).append(']');
+				}
+
+				sb.append('\t').append(entry.getSubject()).append('\n');
+			}
+
+			for (int i = 0; i < failures.size(); i++) {
+				sb.append("failed ").append(failures.get(i)).append('\n');
+			}
+
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.jlocksmith.util.CertificateUtil;
+
+/**
+ * Fingerprint Index. Maps the SHA-1 and SHA-256 fingerprints of the
+ * certificates in a key store to their aliases. The index is kept up to date
+ * from keystore events on the background event thread, so a change is found
+ * once its event has been delivered. Key pair entries are indexed by the
+ * first certificate of their chain.
+ * 
+ * @author Derek Helbert
+ */
+public class FingerprintIndex implements KeystoreListener {
+
+	/** SHA-1 */
+	public static final String SHA1 = "SHA-1";
+
+	/** SHA-256 */
+	public static final String SHA256 = "SHA-256";
+
+	/** Key Store Manager */
+	private KeystoreManager manager;
+
+	/** SHA-1 And SHA-256 Fingerprint By Alias */
+	private Map<String, String[]> byAlias = new HashMap<String, String[]>();
+
+	/** Aliases By Fingerprint, Both Digests Share The Map */
+	private Map<String, List<String>> byFingerprint = new HashMap<String, List<String>>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public FingerprintIndex(KeystoreManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Get Hex Fingerprint
+	 * 
+	 * @param algorithm SHA1 or SHA256
+	 * @param cert Certificate
+	 * 
+	 * @return String
+	 * 
+	 * @throws CertificateEncodingException
+	 */
+	public static String getFingerprint(String algorithm, Certificate cert)
+			throws CertificateEncodingException {
+		try {
+			return CertificateUtil.toHex(MessageDigest.getInstance(algorithm)
+					.digest(cert.getEncoded()));
+		} catch (NoSuchAlgorithmException err) {
+			throw new IllegalArgumentException(err.getMessage());
+		}
+	}
+
+	/**
+	 * Find Aliases By Fingerprint. SHA-1 and SHA-256 fingerprints are
+	 * accepted in upper or lower case, with or without colons.
+	 * 
+	 * @param fingerprint Hex Fingerprint
+	 * 
+	 * @return List
+	 */
+	public synchronized List<String> find(String fingerprint) {
+		List<String> aliases = byFingerprint.get(normalize(fingerprint));
+
+		if (aliases == null) {
+			return Collections.emptyList();
+		}
+
+		return new ArrayList<String>(aliases);
+	}
+
+	/**
+	 * Find Aliases Holding A Certificate
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return List
+	 * 
+	 * @throws CertificateEncodingException
+	 */
+	public List<String> find(Certificate cert)
+			throws CertificateEncodingException {
+		return find(getFingerprint(SHA256, cert));
+	}
+
+	/**
+	 * Get Duplicates. Certificates stored under more than one alias, keyed by
+	 * SHA-256 fingerprint.
+	 * 
+	 * @return Map
+	 */
+	public synchronized Map<String, List<String>> getDuplicates() {
+		Map<String, List<String>> duplicates = new TreeMap<String, List<String>>();
+
+		for (Map.Entry<String, List<String>> entry : byFingerprint.entrySet()) {
+			// SHA-256 keys only, the SHA-1 keys hold the same groups
+			if (entry.getKey().length() == 64 && entry.getValue().size() > 1) {
+				duplicates.put(entry.getKey(), new ArrayList<String>(entry
+						.getValue()));
+			}
+		}
+
+		return duplicates;
+	}
+
+	/**
+	 * Find Certificates Also In The Index, e.g. those of the CA certs key
+	 * store
+	 * 
+	 * @param certs Certificates
+	 * 
+	 * @return Map of SHA-256 fingerprint to aliases
+	 * 
+	 * @throws CertificateEncodingException
+	 */
+	public Map<String, List<String>> findAll(Certificate[] certs)
+			throws CertificateEncodingException {
+		Map<String, List<String>> found = new TreeMap<String, List<String>>();
+
+		for (int i = 0; i < certs.length; i++) {
+			String fingerprint = getFingerprint(SHA256, certs[i]);
+			List<String> aliases = find(fingerprint);
+
+			if (!aliases.isEmpty()) {
+				found.put(fingerprint, aliases);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Get Size
+	 * 
+	 * @return int
+	 */
+	public synchronized int size() {
+		return byAlias.size();
+	}
+
+	/**
+	 * Rebuild From The Key Store
+	 * 
+	 */
+	public void rebuild() {
+		List<String> aliases;
+
+		try {
+			aliases = manager.getAliases();
+		} catch (Exception err) {
+			aliases = Collections.emptyList();
+		}
+
+		synchronized (this) {
+			byAlias.clear();
+			byFingerprint.clear();
+
+			for (int i = 0; i < aliases.size(); i++) {
+				refresh(aliases.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Refresh One Alias From The Key Store
+	 * 
+	 * @param alias Alias
+	 */
+	public synchronized void refresh(String alias) {
+		String[] old = byAlias.remove(alias);
+
+		if (old != null) {
+			for (int i = 0; i < old.length; i++) {
+				List<String> aliases = byFingerprint.get(old[i]);
+				aliases.remove(alias);
+
+				if (aliases.isEmpty()) {
+					byFingerprint.remove(old[i]);
+				}
+			}
+		}
+
+		Certificate cert = null;
+
+		try {
+			if (manager.containsAlias(alias)) {
+				cert = manager.getCertificate(alias);
+			}
+		} catch (Exception err) {
+			err.printStackTrace();
+		}
+
+		if (cert == null) {
+			return;
+		}
+
+		String[] fingerprints;
+
+		try {
+			fingerprints = new String[] { getFingerprint(SHA1, cert),
+					getFingerprint(SHA256, cert) };
+		} catch (CertificateEncodingException err) {
+			err.printStackTrace();
+			return;
+		}
+
+		byAlias.put(alias, fingerprints);
+
+		for (int i = 0; i < fingerprints.length; i++) {
+			List<String> aliases = byFingerprint.get(fingerprints[i]);
+
+			if (aliases == null) {
+				aliases = new ArrayList<String>(1);
+				byFingerprint.put(fingerprints[i], aliases);
+			}
+
+			aliases.add(alias);
+		}
+	}
+
+	/**
+	 * Entry Imported
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void entryImported(KeystoreEvent evt) {
+		refresh(evt);
+	}
+
+	/**
+	 * Entry Deleted
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void entryDeleted(KeystoreEvent evt) {
+		refresh(evt);
+	}
+
+	/**
+	 * Key Store Loaded
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void keyStoreLoaded(KeystoreEvent evt) {
+		rebuild();
+	}
+
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void keyStoreSaved(KeystoreEvent evt) {
+	}
+
+	/**
+	 * Refresh Aliases Of An Event
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void refresh(KeystoreEvent evt) {
+		String[] aliases = evt.getAliases();
+
+		if (aliases == null) {
+			rebuild();
+			return;
+		}
+
+		for (int i = 0; i < aliases.length; i++) {
+			refresh(aliases[i]);
+		}
+	}
+
+	/**
+	 * Normalize Fingerprint
+	 * 
+	 * @param fingerprint Fingerprint
+	 * 
+	 * @return String
+	 */
+	private static String normalize(String fingerprint) {
+		StringBuilder sb = new StringBuilder(fingerprint.length());
+
+		for (int i = 0; i < fingerprint.length(); i++) {
+			char c = fingerprint.charAt(i);
+
+			if (Character.digit(c, 16) != -1) {
+				sb.append(Character.toLowerCase(c));
+			}
+		}
+
+		return sb.toString();
+	}
+}
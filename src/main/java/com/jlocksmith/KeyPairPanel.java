@@ -18,6 +18,8 @@
 package com.jlocksmith;
 
 import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
@@ -37,7 +39,7 @@ import com.jlocksmith.util.LocaleUtil;
  * 
  * @author Derek Helbert
  */
-public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener {
+public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener, ActionListener {
 
 	/**
 	 * Serial Version UID
@@ -56,9 +58,6 @@ public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener
 	/** Size Label */
 	private JLabel sizeLabel = new JLabel("1024 " + localeUtil.getString("bits"));
 	
-	/** Tick Size */
-	private static int ticksize = 64;
-	
 	/**
 	 * Constructor
 	 */
@@ -80,10 +79,11 @@ public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener
 			algCombo.addItem(algs[i]);
 		}
 
-		sizeSlider.setMajorTickSpacing(ticksize);
 		sizeSlider.setSnapToTicks(true);
 		sizeSlider.addChangeListener(this);
 		sizeSlider.addKeyListener(this);
+		algCombo.addActionListener(this);
+		updateSizes();
 		
 		add(new JLabel(localeUtil.getString("algorithm")));
 		add(algCombo);
@@ -111,6 +111,29 @@ public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener
 		return algCombo.getSelectedItem().toString();
 	}
 
+	/**
+	 * Algorithm Selected
+	 * 
+	 * @param e Action Event
+	 */
+	public void actionPerformed(ActionEvent e) {
+		updateSizes();
+	}
+
+	/**
+	 * Update Slider To The Key Sizes Of The Selected Algorithm
+	 * 
+	 */
+	private void updateSizes() {
+		int[] sizes = KeyUtil.getKeySizes(getKeyAlgorithm());
+
+		sizeSlider.setMinimum(sizes[0]);
+		sizeSlider.setMaximum(sizes[sizes.length - 1]);
+		sizeSlider.setMajorTickSpacing(sizes.length > 1 ? sizes[1] - sizes[0] : 1);
+		sizeSlider.setValue(KeyUtil.getDefaultKeySize(getKeyAlgorithm()));
+		sizeSlider.setEnabled(sizes.length > 1);
+	}
+
 	/**
 	 * State Changed
 	 */
@@ -132,13 +155,15 @@ public class KeyPairPanel extends JPanel implements ChangeListener, KeyListener
 	 * @param e Key Event
 	 */
 	public void keyReleased(KeyEvent e) {
+		int ticksize = sizeSlider.getMajorTickSpacing();
+
 		if( e.getKeyCode() == KeyEvent.VK_LEFT ) {
-			if( sizeSlider.getValue() > 512) {
+			if( sizeSlider.getValue() > sizeSlider.getMinimum()) {
 				sizeSlider.setValue( sizeSlider.getValue() - ticksize);
 			}
 		}
 		else if( e.getKeyCode() == KeyEvent.VK_RIGHT ) {
-			if( sizeSlider.getValue() < 1024) {
+			if( sizeSlider.getValue() < sizeSlider.getMaximum()) {
 				sizeSlider.setValue( sizeSlider.getValue() + ticksize);
 			}		
 		}
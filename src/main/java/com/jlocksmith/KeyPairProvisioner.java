@@ -0,0 +1,623 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.KeyPair;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+
+import com.jlocksmith.util.CertificateUtil;
+import com.jlocksmith.util.KeyUtil;
+import com.jlocksmith.util.SignatureUtil;
+
+/**
+ * Key Pair Provisioner. Creates key pair entries with self-signed
+ * certificates from one template for a list of names. Key pairs and
+ * certificates are generated on a pool of worker threads, one per processor
+ * by default, and all entries are committed as one batch. Failures are
+ * collected in the result instead of being reported one by one.
+ * 
+ * <p>
+ * The subject attributes and the alias template may contain these
+ * placeholders:
+ * 
+ * <pre>
+ * {name}   the name, e.g. the first column of a CSV row
+ * {n}      position of the name, starting at 1
+ * </pre>
+ * 
+ * Aliases already in use get a numeric suffix.
+ * 
+ * @author Derek Helbert
+ */
+public class KeyPairProvisioner {
+
+	/** Default Alias Template */
+	public static final String DEFAULT_TEMPLATE = "{name}";
+
+	/** Subject Attributes In Certificate Order */
+	public static final String[] ATTRIBUTES = { "CN", "OU", "O", "L", "ST",
+			"C", "E" };
+
+	/** Key Store Manager */
+	private KeystoreManager manager;
+
+	/** Key Algorithm */
+	private String keyAlgorithm = KeyUtil.RSA;
+
+	/** Key Size */
+	private int keySize = KeyUtil.getDefaultKeySize(KeyUtil.RSA);
+
+	/** Signature Algorithm */
+	private String signatureAlgorithm = null;
+
+	/** Validity (Days) */
+	private int validity = 365;
+
+	/** Subject Attribute Patterns */
+	private Map<String, String> subject = new LinkedHashMap<String, String>();
+
+	/** Alias Template */
+	private String template = DEFAULT_TEMPLATE;
+
+	/** Number Of Worker Threads */
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/** Listener */
+	private Listener listener = null;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public KeyPairProvisioner(KeystoreManager manager) {
+		this.manager = manager;
+		this.subject.put("CN", "{name}");
+	}
+
+	/**
+	 * Set Key Algorithm And Size
+	 * 
+	 * @param keyAlgorithm Key Algorithm
+	 * @param keySize Key Size
+	 */
+	public void setKeyPair(String keyAlgorithm, int keySize) {
+		this.keyAlgorithm = keyAlgorithm;
+		this.keySize = keySize;
+	}
+
+	/**
+	 * Set Signature Algorithm, the default one of the key algorithm if null
+	 * 
+	 * @param signatureAlgorithm Signature Algorithm
+	 */
+	public void setSignatureAlgorithm(String signatureAlgorithm) {
+		this.signatureAlgorithm = signatureAlgorithm;
+	}
+
+	/**
+	 * Set Validity
+	 * 
+	 * @param validity Validity (Days)
+	 */
+	public void setValidity(int validity) {
+		this.validity = validity;
+	}
+
+	/**
+	 * Set Subject Attribute Pattern
+	 * 
+	 * @param attribute Attribute, one of ATTRIBUTES
+	 * @param pattern Pattern, or null or empty to leave the attribute out
+	 */
+	public void setAttribute(String attribute, String pattern) {
+		String key = attribute.toUpperCase();
+
+		if ("EMAILADDRESS".equals(key)) {
+			key = "E";
+		}
+
+		if (!isAttribute(key)) {
+			throw new IllegalArgumentException("Unsupported attribute "
+					+ attribute);
+		}
+
+		if (pattern == null || pattern.length() == 0) {
+			subject.remove(key);
+		} else {
+			subject.put(key, pattern);
+		}
+	}
+
+	/**
+	 * Set Subject Pattern, e.g. "CN={name}.test, O=Example, C=US"
+	 * 
+	 * @param pattern Distinguished Name Pattern
+	 * 
+	 * @throws IllegalArgumentException
+	 */
+	public void setSubject(String pattern) {
+		List<Rdn> rdns;
+
+		try {
+			rdns = new LdapName(pattern).getRdns();
+		} catch (InvalidNameException err) {
+			throw new IllegalArgumentException(err.getMessage());
+		}
+
+		subject.clear();
+
+		for (int i = 0; i < rdns.size(); i++) {
+			setAttribute(rdns.get(i).getType(), rdns.get(i).getValue()
+					.toString());
+		}
+	}
+
+	/**
+	 * Set Alias Template
+	 * 
+	 * @param template Alias Template
+	 */
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	/**
+	 * Set Number Of Worker Threads
+	 * 
+	 * @param threads Threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Set Listener
+	 * 
+	 * @param listener Listener
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Read Names From A CSV File, the first column of each row. Empty rows and
+	 * rows starting with # are skipped.
+	 * 
+	 * @param file CSV File
+	 * 
+	 * @return List
+	 * 
+	 * @throws IOException
+	 */
+	public static List<String> readNames(File file) throws IOException {
+		List<String> names = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+
+		try {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+
+				if (line.length() == 0 || line.charAt(0) == '#') {
+					continue;
+				}
+
+				String name = firstColumn(line);
+
+				if (name.length() > 0) {
+					names.add(name);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return names;
+	}
+
+	/**
+	 * Provision Numbered Entries, named 1 to count
+	 * 
+	 * @param count Number Of Entries
+	 * @param password Key Password
+	 * 
+	 * @return Result
+	 * 
+	 * @throws KeyStoreException
+	 * @throws InterruptedException
+	 * @throws IllegalArgumentException if the count is negative
+	 */
+	public Result provision(int count, String password)
+			throws KeyStoreException, InterruptedException {
+		if (count < 0) {
+			throw new IllegalArgumentException(
+					"Number of entries must not be negative: " + count);
+		}
+
+		List<String> names = new ArrayList<String>(count);
+
+		for (int i = 1; i <= count; i++) {
+			names.add(String.valueOf(i));
+		}
+
+		return provision(names, password);
+	}
+
+	/**
+	 * Provision One Entry Per Name. Nothing is committed if the calling
+	 * thread is interrupted.
+	 * 
+	 * @param names Names
+	 * @param password Key Password
+	 * 
+	 * @return Result
+	 * 
+	 * @throws KeyStoreException
+	 * @throws InterruptedException
+	 */
+	public Result provision(List<String> names, String password)
+			throws KeyStoreException, InterruptedException {
+		Result result = new Result();
+		final String sigAlg;
+
+		try {
+			sigAlg = signatureAlgorithm != null ? signatureAlgorithm
+					: SignatureUtil.getDefaultSignatureType(keyAlgorithm);
+		} catch (NoSuchAlgorithmException err) {
+			throw new KeyStoreException(err.getMessage());
+		}
+
+		// Aliases are assigned in name order so they do not depend on
+		// scheduling
+		Set<String> aliases = new HashSet<String>();
+		List<String> existing = manager.getAliases();
+
+		for (int i = 0; i < existing.size(); i++) {
+			aliases.add(existing.get(i).toLowerCase());
+		}
+
+		List<String> assigned = new ArrayList<String>(names.size());
+
+		for (int i = 0; i < names.size(); i++) {
+			String alias = unique(expand(template, names.get(i), i).trim()
+					.toLowerCase(), aliases);
+			aliases.add(alias);
+			assigned.add(alias);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "jlocksmith-provision");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		try {
+			final AtomicInteger done = new AtomicInteger();
+			final int total = names.size();
+			List<Future<Generated>> generating = new ArrayList<Future<Generated>>(total);
+
+			for (int i = 0; i < total; i++) {
+				final String[] values = expandSubject(names.get(i), i);
+
+				generating.add(pool.submit(new Callable<Generated>() {
+					public Generated call() throws Exception {
+						KeyPair keyPair = KeyUtil.getKeyPair(keyAlgorithm,
+								keySize);
+						X509Certificate cert = CertificateUtil
+								.generateCertificate(values[0], values[1],
+										values[2], values[3], values[4],
+										values[5], values[6], validity,
+										keyPair, sigAlg);
+
+						if (listener != null) {
+							listener.provisioned(done.incrementAndGet(), total);
+						}
+
+						return new Generated(keyPair, cert);
+					}
+				}));
+			}
+
+			List<String> committing = new ArrayList<String>(total);
+			List<Generated> generated = new ArrayList<Generated>(total);
+
+			for (int i = 0; i < total; i++) {
+				try {
+					Generated entry = generating.get(i).get();
+					committing.add(assigned.get(i));
+					generated.add(entry);
+				} catch (ExecutionException err) {
+					Throwable cause = err.getCause() == null ? err : err
+							.getCause();
+					result.failures.add(names.get(i) + ": "
+							+ cause.getMessage());
+				}
+			}
+
+			result.created.addAll(commit(committing, generated, password));
+
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Commit Entries As One Batch. Aliases taken by entries added while the
+	 * key pairs were generated are made unique again, so no entry is
+	 * overwritten.
+	 * 
+	 * @param aliases Aliases
+	 * @param generated Generated Key Pairs And Certificates
+	 * @param password Key Password
+	 * 
+	 * @return List Aliases Committed
+	 * 
+	 * @throws KeyStoreException
+	 */
+	private List<String> commit(List<String> aliases,
+			List<Generated> generated, String password)
+			throws KeyStoreException {
+		if (aliases.isEmpty()) {
+			return aliases;
+		}
+
+		manager.beginBatch();
+		boolean committed = false;
+
+		try {
+			Set<String> taken = new HashSet<String>();
+			List<String> existing = manager.getAliases();
+
+			for (int i = 0; i < existing.size(); i++) {
+				taken.add(existing.get(i).toLowerCase());
+			}
+
+			List<String> committing = new ArrayList<String>(aliases.size());
+
+			for (int i = 0; i < aliases.size(); i++) {
+				String alias = unique(aliases.get(i), taken);
+				Generated entry = generated.get(i);
+
+				taken.add(alias);
+				committing.add(alias);
+				manager.setKeyEntry(alias, entry.keyPair.getPrivate(),
+						password, new Certificate[] { entry.cert });
+			}
+
+			manager.commit();
+			committed = true;
+
+			return committing;
+		} finally {
+			if (!committed) {
+				manager.rollback();
+			}
+		}
+	}
+
+	/**
+	 * Expand Subject Attribute Patterns
+	 * 
+	 * @param name Name
+	 * @param index Position Of The Name
+	 * 
+	 * @return String[] Values In ATTRIBUTES Order, null where not set
+	 */
+	private String[] expandSubject(String name, int index) {
+		String[] values = new String[ATTRIBUTES.length];
+
+		for (int i = 0; i < ATTRIBUTES.length; i++) {
+			String pattern = subject.get(ATTRIBUTES[i]);
+
+			if (pattern != null) {
+				values[i] = expand(pattern, name, index);
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Expand Placeholders
+	 * 
+	 * @param pattern Pattern
+	 * @param name Name
+	 * @param index Position Of The Name
+	 * 
+	 * @return String
+	 */
+	private static String expand(String pattern, String name, int index) {
+		return pattern.replace("{name}", name).replace("{n}",
+				String.valueOf(index + 1));
+	}
+
+	/**
+	 * Make Alias Unique
+	 * 
+	 * @param alias Alias
+	 * @param aliases Aliases In Use
+	 * 
+	 * @return String
+	 */
+	private static String unique(String alias, Set<String> aliases) {
+		if (!aliases.contains(alias)) {
+			return alias;
+		}
+
+		int n = 1;
+
+		while (aliases.contains(alias + "-" + n)) {
+			n++;
+		}
+
+		return alias + "-" + n;
+	}
+
+	/**
+	 * Is Supported Attribute
+	 * 
+	 * @param attribute Attribute
+	 * 
+	 * @return boolean
+	 */
+	private static boolean isAttribute(String attribute) {
+		for (int i = 0; i < ATTRIBUTES.length; i++) {
+			if (ATTRIBUTES[i].equals(attribute)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get First CSV Column, Unquoted
+	 * 
+	 * @param line Line
+	 * 
+	 * @return String
+	 */
+	private static String firstColumn(String line) {
+		if (line.charAt(0) != '"') {
+			int comma = line.indexOf(',');
+			return (comma == -1 ? line : line.substring(0, comma)).trim();
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 1; i < line.length(); i++) {
+			char c = line.charAt(i);
+
+			if (c == '"') {
+				if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					sb.append(c);
+					i++;
+				} else {
+					break;
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+
+		return sb.toString().trim();
+	}
+
+	/**
+	 * Progress Listener
+	 * 
+	 */
+	public interface Listener {
+
+		/**
+		 * Entry Generated, called on a worker thread
+		 * 
+		 * @param done Number Of Entries Generated
+		 * @param total Number Of Entries
+		 */
+		public void provisioned(int done, int total);
+	}
+
+	/**
+	 * Generated Key Pair And Certificate
+	 * 
+	 */
+	private static class Generated {
+
+		/** Key Pair */
+		final KeyPair keyPair;
+
+		/** Certificate */
+		final X509Certificate cert;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param keyPair
+		 * @param cert
+		 */
+		Generated(KeyPair keyPair, X509Certificate cert) {
+			this.keyPair = keyPair;
+			this.cert = cert;
+		}
+	}
+
+	/**
+	 * Provisioning Result
+	 * 
+	 */
+	public static class Result {
+
+		/** Created Aliases */
+		private final List<String> created = new ArrayList<String>();
+
+		/** Failures */
+		private final List<String> failures = new ArrayList<String>();
+
+		/**
+		 * Get Created Aliases
+		 * 
+		 * @return List
+		 */
+		public List<String> getCreated() {
+			return Collections.unmodifiableList(created);
+		}
+
+		/**
+		 * Get Failures
+		 * 
+		 * @return List
+		 */
+		public List<String> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+/**
+ * Keystore Adapter. Empty implementation of the keystore listener for
+ * listeners interested in some events only.
+ * 
+ * @author Derek Helbert
+ */
+public abstract class KeystoreAdapter implements KeystoreListener {
+
+	/**
+	 * Certificate Imported
+	 * 
+	 * @param evt 
+	 */
+	public void entryImported(KeystoreEvent evt) {
+	}
+
+	/**
+	 * Entry Deleted
+	 * 
+	 * @param evt 
+	 */
+	public void entryDeleted(KeystoreEvent evt) {
+	}
+
+	/**
+	 * Key Store Loaded
+	 * 
+	 * @param evt 
+	 */
+	public void keyStoreLoaded(KeystoreEvent evt) {
+	}
+
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt 
+	 */
+	public void keyStoreSaved(KeystoreEvent evt) {
+	}
+}
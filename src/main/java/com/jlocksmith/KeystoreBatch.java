@@ -0,0 +1,489 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Key Store Batch. Mutations made while a batch is open are staged here by
+ * alias, the latest mutation of an alias replacing earlier ones, and applied
+ * to the key store in one pass on commit.
+ * 
+ * @author Derek Helbert
+ */
+class KeystoreBatch {
+
+	/** Set Certificate Entry */
+	private static final int SET_CERTIFICATE = 0;
+
+	/** Set Key Entry */
+	private static final int SET_KEY = 1;
+
+	/** Delete Entry */
+	private static final int DELETE = 2;
+
+	/** Owner Thread */
+	private Thread owner;
+
+	/** Nesting Depth */
+	private int depth = 1;
+
+	/** Staged Mutations By Alias */
+	private Map<String, Mutation> mutations = new LinkedHashMap<String, Mutation>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param owner Owner Thread
+	 */
+	KeystoreBatch(Thread owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Get Owner Thread
+	 * 
+	 * @return Thread
+	 */
+	Thread getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Enter Nested Batch
+	 * 
+	 */
+	void enter() {
+		depth++;
+	}
+
+	/**
+	 * Leave Batch
+	 * 
+	 * @return boolean true if the outermost batch was left
+	 */
+	boolean leave() {
+		return --depth == 0;
+	}
+
+	/**
+	 * Is Empty
+	 * 
+	 * @return boolean
+	 */
+	boolean isEmpty() {
+		return mutations.isEmpty();
+	}
+
+	/**
+	 * Stage Certificate Entry
+	 * 
+	 * @param alias Alias
+	 * @param cert Certificate
+	 */
+	void setCertificateEntry(String alias, Certificate cert) {
+		stage(alias, new Mutation(SET_CERTIFICATE, cert, null, null, null));
+	}
+
+	/**
+	 * Stage Key Entry
+	 * 
+	 * @param alias Alias
+	 * @param key Key
+	 * @param password Key Password
+	 * @param chain Certificate Chain
+	 */
+	void setKeyEntry(String alias, Key key, char[] password, Certificate[] chain) {
+		stage(alias, new Mutation(SET_KEY, null, key, password, chain));
+	}
+
+	/**
+	 * Stage Entry Deletion
+	 * 
+	 * @param alias Alias
+	 */
+	void deleteEntry(String alias) {
+		stage(alias, new Mutation(DELETE, null, null, null, null));
+	}
+
+	/**
+	 * Is Alias Staged
+	 * 
+	 * @param alias Alias
+	 * 
+	 * @return boolean
+	 */
+	boolean isStaged(String alias) {
+		return mutations.containsKey(alias);
+	}
+
+	/**
+	 * Contains Staged Alias
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return boolean
+	 */
+	boolean containsAlias(String alias) {
+		return mutations.get(alias).kind != DELETE;
+	}
+
+	/**
+	 * Is Staged Certificate Entry
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return boolean
+	 */
+	boolean isCertificateEntry(String alias) {
+		return mutations.get(alias).kind == SET_CERTIFICATE;
+	}
+
+	/**
+	 * Is Staged Key Entry
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return boolean
+	 */
+	boolean isKeyEntry(String alias) {
+		return mutations.get(alias).kind == SET_KEY;
+	}
+
+	/**
+	 * Get Staged Certificate
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return Certificate
+	 */
+	Certificate getCertificate(String alias) {
+		Mutation m = mutations.get(alias);
+
+		if (m.kind == SET_CERTIFICATE) {
+			return m.cert;
+		}
+
+		if (m.kind == SET_KEY && m.chain != null && m.chain.length > 0) {
+			return m.chain[0];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get Staged Certificate Chain
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return Certificate[]
+	 */
+	Certificate[] getCertificateChain(String alias) {
+		Mutation m = mutations.get(alias);
+
+		if (m.kind == SET_KEY && m.chain != null && m.chain.length > 0) {
+			return m.chain.clone();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Get Staged Key
+	 * 
+	 * @param alias Staged Alias
+	 * 
+	 * @return Key
+	 */
+	Key getKey(String alias) {
+		return mutations.get(alias).key;
+	}
+
+	/**
+	 * Merge Staged Aliases Into Key Store Aliases
+	 * 
+	 * @param aliases Key Store Aliases
+	 * 
+	 * @return List
+	 */
+	List<String> mergeAliases(List<String> aliases) {
+		List<String> merged = new ArrayList<String>(aliases.size()
+				+ mutations.size());
+
+		for (int i = 0; i < aliases.size(); i++) {
+			if (!mutations.containsKey(aliases.get(i))) {
+				merged.add(aliases.get(i));
+			}
+		}
+
+		for (Iterator<Map.Entry<String, Mutation>> it = mutations.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, Mutation> entry = it.next();
+
+			if (entry.getValue().kind != DELETE) {
+				merged.add(entry.getKey());
+			}
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Apply Staged Mutations
+	 * 
+	 * @param keyStore Key Store
+	 * 
+	 * @throws KeyStoreException
+	 */
+	void apply(KeyStore keyStore) throws KeyStoreException {
+		for (Iterator<Map.Entry<String, Mutation>> it = mutations.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, Mutation> entry = it.next();
+			Mutation m = entry.getValue();
+
+			// The set may replace a staged delete, entries of another kind
+			// can not be overwritten
+			if (m.kind != DELETE
+					&& keyStore.containsAlias(entry.getKey())
+					&& keyStore.isCertificateEntry(entry.getKey()) != (m.kind == SET_CERTIFICATE)) {
+				keyStore.deleteEntry(entry.getKey());
+			}
+
+			switch (m.kind) {
+			case SET_CERTIFICATE:
+				keyStore.setCertificateEntry(entry.getKey(), m.cert);
+				break;
+			case SET_KEY:
+				keyStore.setKeyEntry(entry.getKey(), m.key, m.password, m.chain);
+				break;
+			default:
+				if (keyStore.containsAlias(entry.getKey())) {
+					keyStore.deleteEntry(entry.getKey());
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Record Undo Log. The current entries of the staged aliases are staged
+	 * in a new batch, so applying it reverts this one. Key entries are read
+	 * with the key passwords staged here or the key store password.
+	 * 
+	 * @param keyStore Key Store
+	 * @param password Key Store Password or null
+	 * 
+	 * @return KeystoreBatch or null if a key entry can not be read with any
+	 *         of the passwords
+	 * 
+	 * @throws KeyStoreException
+	 */
+	KeystoreBatch prepareUndo(KeyStore keyStore, char[] password)
+			throws KeyStoreException {
+		List<char[]> passwords = new ArrayList<char[]>();
+
+		if (password != null) {
+			passwords.add(password);
+		}
+
+		for (Iterator<Mutation> it = mutations.values().iterator(); it
+				.hasNext();) {
+			Mutation m = it.next();
+
+			if (m.kind == SET_KEY && m.password != null) {
+				passwords.add(m.password);
+			}
+		}
+
+		KeystoreBatch undo = new KeystoreBatch(owner);
+
+		for (Iterator<String> it = mutations.keySet().iterator(); it.hasNext();) {
+			String alias = it.next();
+
+			if (!keyStore.containsAlias(alias)) {
+				undo.deleteEntry(alias);
+			} else if (keyStore.isCertificateEntry(alias)) {
+				undo.setCertificateEntry(alias, keyStore.getCertificate(alias));
+			} else {
+				char[] keyPassword = null;
+				Key key = null;
+
+				for (int i = 0; i < passwords.size() && key == null; i++) {
+					try {
+						key = keyStore.getKey(alias, passwords.get(i));
+						keyPassword = passwords.get(i);
+					} catch (UnrecoverableKeyException err) {
+						// Try the next password
+					} catch (NoSuchAlgorithmException err) {
+						return null;
+					}
+				}
+
+				if (key == null) {
+					return null;
+				}
+
+				undo.setKeyEntry(alias, key, keyPassword, keyStore
+						.getCertificateChain(alias));
+			}
+		}
+
+		return undo;
+	}
+
+	/**
+	 * Revert Key Store With An Undo Log. Every alias is restored even if
+	 * some fail, the first failure is thrown afterwards.
+	 * 
+	 * @param keyStore Key Store
+	 * 
+	 * @throws KeyStoreException
+	 */
+	void revert(KeyStore keyStore) throws KeyStoreException {
+		KeyStoreException error = null;
+
+		for (Iterator<Map.Entry<String, Mutation>> it = mutations.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, Mutation> entry = it.next();
+			Mutation m = entry.getValue();
+
+			try {
+				// Entries of another kind can not be overwritten
+				if (keyStore.containsAlias(entry.getKey())) {
+					keyStore.deleteEntry(entry.getKey());
+				}
+
+				if (m.kind == SET_CERTIFICATE) {
+					keyStore.setCertificateEntry(entry.getKey(), m.cert);
+				} else if (m.kind == SET_KEY) {
+					keyStore.setKeyEntry(entry.getKey(), m.key, m.password,
+							m.chain);
+				}
+			} catch (KeyStoreException err) {
+				if (error == null) {
+					error = err;
+				}
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Get Set Aliases
+	 * 
+	 * @return String[]
+	 */
+	String[] getImported() {
+		return collect(false);
+	}
+
+	/**
+	 * Get Deleted Aliases
+	 * 
+	 * @return String[]
+	 */
+	String[] getDeleted() {
+		return collect(true);
+	}
+
+	/**
+	 * Stage Mutation, Replacing Earlier Ones Of The Alias
+	 * 
+	 * @param alias Alias
+	 * @param m Mutation
+	 */
+	private void stage(String alias, Mutation m) {
+		mutations.remove(alias);
+		mutations.put(alias, m);
+	}
+
+	/**
+	 * Collect Aliases
+	 * 
+	 * @param deleted Deleted Or Set Aliases
+	 * 
+	 * @return String[]
+	 */
+	private String[] collect(boolean deleted) {
+		List<String> list = new ArrayList<String>();
+
+		for (Iterator<Map.Entry<String, Mutation>> it = mutations.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, Mutation> entry = it.next();
+
+			if ((entry.getValue().kind == DELETE) == deleted) {
+				list.add(entry.getKey());
+			}
+		}
+
+		return list.toArray(new String[list.size()]);
+	}
+
+	/**
+	 * Staged Mutation
+	 * 
+	 */
+	private static class Mutation {
+
+		/** Kind */
+		final int kind;
+
+		/** Certificate */
+		final Certificate cert;
+
+		/** Key */
+		final Key key;
+
+		/** Key Password */
+		final char[] password;
+
+		/** Certificate Chain */
+		final Certificate[] chain;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param kind
+		 * @param cert
+		 * @param key
+		 * @param password
+		 * @param chain
+		 */
+		Mutation(int kind, Certificate cert, Key key, char[] password,
+				Certificate[] chain) {
+			this.kind = kind;
+			this.cert = cert;
+			this.key = key;
+			this.password = password;
+			this.chain = chain;
+		}
+	}
+}
@@ -29,6 +29,33 @@ public class KeystoreEvent extends java.util.EventObject {
 	 */
 	private static final long serialVersionUID = -1986903363461661496L;
 
+	/** Unspecified Change */
+	public static final int UNSPECIFIED = 0;
+
+	/** Entry Imported */
+	public static final int ENTRY_IMPORTED = 1;
+
+	/** Entry Deleted */
+	public static final int ENTRY_DELETED = 2;
+
+	/** Key Store Loaded */
+	public static final int KEYSTORE_LOADED = 3;
+
+	/** Key Store Saved */
+	public static final int KEYSTORE_SAVED = 4;
+
+	/** Change Type */
+	private int type = UNSPECIFIED;
+
+	/** Affected Aliases, Null When Unknown */
+	private String[] aliases = null;
+
+	/** Saved File Path */
+	private String path = null;
+
+	/** Save Error */
+	private Exception error = null;
+
 	/**
 	 * Constructor
 	 * 
@@ -38,4 +65,89 @@ public class KeystoreEvent extends java.util.EventObject {
 		super(source);
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param source Source
+	 * @param type Change Type
+	 */
+	public KeystoreEvent(Object source, int type) {
+		super(source);
+		this.type = type;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Source
+	 * @param type Change Type
+	 * @param alias Affected Alias
+	 */
+	public KeystoreEvent(Object source, int type, String alias) {
+		this(source, type, new String[] { alias });
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Source
+	 * @param type Change Type
+	 * @param aliases Affected Aliases
+	 */
+	public KeystoreEvent(Object source, int type, String[] aliases) {
+		super(source);
+		this.type = type;
+		this.aliases = aliases;
+	}
+
+	/**
+	 * Constructor For A Completed Save
+	 * 
+	 * @param source Source
+	 * @param path Saved File Path
+	 * @param error Save Error or null on success
+	 */
+	public KeystoreEvent(Object source, String path, Exception error) {
+		super(source);
+		this.type = KEYSTORE_SAVED;
+		this.path = path;
+		this.error = error;
+	}
+
+	/**
+	 * Get Change Type
+	 * 
+	 * @return int
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Get Affected Aliases
+	 * 
+	 * @return String[] or null if the affected entries are not known
+	 */
+	public String[] getAliases() {
+		return aliases;
+	}
+
+	/**
+	 * Get Saved File Path
+	 * 
+	 * @return String
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Get Save Error
+	 * 
+	 * @return Exception or null if the save succeeded
+	 */
+	public Exception getError() {
+		return error;
+	}
+
 }
@@ -0,0 +1,408 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Keystore Event Bus. Entry changes posted within a short window, or while
+ * the bus is held, are merged into one imported and one deleted event
+ * carrying all changed aliases. Swing listeners are called on the event
+ * dispatch thread, background listeners on a single event thread in posting
+ * order. Listeners may be added and removed from any thread.
+ * 
+ * @author Derek Helbert
+ */
+public class KeystoreEventBus {
+
+	/** Default Coalescing Window In Milliseconds */
+	public static final long DEFAULT_WINDOW = 25;
+
+	/** Event Source */
+	private Object source;
+
+	/** Coalescing Window */
+	private long window;
+
+	/** Swing Listeners */
+	private List<KeystoreListener> swingListeners = new CopyOnWriteArrayList<KeystoreListener>();
+
+	/** Background Listeners */
+	private List<KeystoreListener> backgroundListeners = new CopyOnWriteArrayList<KeystoreListener>();
+
+	/** Pending Change Type By Alias */
+	private Map<String, Integer> pending = new LinkedHashMap<String, Integer>();
+
+	/** Imported Entries Not Known */
+	private boolean importedUnknown = false;
+
+	/** Deleted Entries Not Known */
+	private boolean deletedUnknown = false;
+
+	/** Flush Scheduled */
+	private boolean scheduled = false;
+
+	/** Hold Count */
+	private int holds = 0;
+
+	/** Event Thread */
+	private volatile Thread eventThread = null;
+
+	/** Event Thread Executor */
+	private ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "jlocksmith-events");
+					thread.setDaemon(true);
+					eventThread = thread;
+					return thread;
+				}
+			});
+
+	/** Flush Task */
+	private Runnable flushTask = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Event Source
+	 */
+	public KeystoreEventBus(Object source) {
+		this(source, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source Event Source
+	 * @param window Coalescing Window In Milliseconds
+	 */
+	public KeystoreEventBus(Object source, long window) {
+		this.source = source;
+		this.window = window;
+	}
+
+	/**
+	 * Add Listener Called On The Event Dispatch Thread
+	 * 
+	 * @param listener Keystore Listener
+	 */
+	public void addSwingListener(KeystoreListener listener) {
+		swingListeners.add(listener);
+	}
+
+	/**
+	 * Add Listener Called On The Event Thread
+	 * 
+	 * @param listener Keystore Listener
+	 */
+	public void addBackgroundListener(KeystoreListener listener) {
+		backgroundListeners.add(listener);
+	}
+
+	/**
+	 * Remove Listener
+	 * 
+	 * @param listener Keystore Listener
+	 */
+	public void removeListener(KeystoreListener listener) {
+		swingListeners.remove(listener);
+		backgroundListeners.remove(listener);
+	}
+
+	/**
+	 * Post Event. Entry changes are queued for the next flush, other events
+	 * flush queued changes and are dispatched right away. Pending changes are
+	 * dropped when a key store is loaded.
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void post(KeystoreEvent evt) {
+		List<KeystoreEvent> events;
+
+		synchronized (this) {
+			if (evt.getType() == KeystoreEvent.ENTRY_IMPORTED
+					|| evt.getType() == KeystoreEvent.ENTRY_DELETED) {
+				queue(evt);
+
+				if (!scheduled && holds == 0 && !executor.isShutdown()) {
+					scheduled = true;
+
+					try {
+						executor.schedule(flushTask, window,
+								TimeUnit.MILLISECONDS);
+					} catch (RejectedExecutionException err) {
+						scheduled = false;
+					}
+				}
+
+				return;
+			}
+
+			if (evt.getType() == KeystoreEvent.KEYSTORE_LOADED) {
+				discard();
+				events = new ArrayList<KeystoreEvent>(1);
+			} else {
+				events = drain();
+			}
+		}
+
+		events.add(evt);
+		dispatch(events);
+	}
+
+	/**
+	 * Hold Entry Changes Until Released
+	 * 
+	 */
+	public synchronized void hold() {
+		holds++;
+	}
+
+	/**
+	 * Release Hold, The Last Release Flushes Held Changes
+	 * 
+	 */
+	public void release() {
+		synchronized (this) {
+			if (holds == 0 || --holds > 0) {
+				return;
+			}
+		}
+
+		flush();
+	}
+
+	/**
+	 * Discard Queued Entry Changes
+	 * 
+	 */
+	public synchronized void discard() {
+		pending.clear();
+		importedUnknown = false;
+		deletedUnknown = false;
+	}
+
+	/**
+	 * Dispatch Queued Entry Changes Now
+	 * 
+	 */
+	public void flush() {
+		List<KeystoreEvent> events;
+
+		synchronized (this) {
+			scheduled = false;
+
+			if (holds > 0) {
+				return;
+			}
+
+			events = drain();
+		}
+
+		dispatch(events);
+	}
+
+	/**
+	 * Sync. Dispatches queued entry changes and waits until the background
+	 * listeners received them. Returns right away on the event thread.
+	 * 
+	 */
+	public void sync() {
+		flush();
+
+		if (Thread.currentThread() == eventThread || executor.isShutdown()) {
+			return;
+		}
+
+		try {
+			executor.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		} catch (RejectedExecutionException err) {
+			// Shut down meanwhile
+		} catch (ExecutionException err) {
+			err.printStackTrace();
+		} catch (InterruptedException err) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Shutdown. Queued entry changes are dispatched and the event thread
+	 * stops after delivering them, later events only reach Swing listeners.
+	 * 
+	 */
+	public void shutdown() {
+		flush();
+		executor.shutdown();
+	}
+
+	/**
+	 * Queue Entry Change
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void queue(KeystoreEvent evt) {
+		String[] aliases = evt.getAliases();
+
+		if (aliases == null) {
+			if (evt.getType() == KeystoreEvent.ENTRY_IMPORTED) {
+				importedUnknown = true;
+			} else {
+				deletedUnknown = true;
+			}
+
+			return;
+		}
+
+		Integer type = Integer.valueOf(evt.getType());
+
+		// Latest change of an alias wins and moves to the end
+		for (int i = 0; i < aliases.length; i++) {
+			pending.remove(aliases[i]);
+			pending.put(aliases[i], type);
+		}
+	}
+
+	/**
+	 * Drain Queued Entry Changes Into Events
+	 * 
+	 * @return List
+	 */
+	private List<KeystoreEvent> drain() {
+		List<String> imported = new ArrayList<String>();
+		List<String> deleted = new ArrayList<String>();
+
+		for (Iterator<Map.Entry<String, Integer>> it = pending.entrySet()
+				.iterator(); it.hasNext();) {
+			Map.Entry<String, Integer> entry = it.next();
+
+			if (entry.getValue().intValue() == KeystoreEvent.ENTRY_IMPORTED) {
+				imported.add(entry.getKey());
+			} else {
+				deleted.add(entry.getKey());
+			}
+		}
+
+		List<KeystoreEvent> events = new ArrayList<KeystoreEvent>(3);
+
+		if (deletedUnknown) {
+			events.add(new KeystoreEvent(source, KeystoreEvent.ENTRY_DELETED));
+		} else if (!deleted.isEmpty()) {
+			events.add(new KeystoreEvent(source, KeystoreEvent.ENTRY_DELETED,
+					deleted.toArray(new String[deleted.size()])));
+		}
+
+		if (importedUnknown) {
+			events.add(new KeystoreEvent(source, KeystoreEvent.ENTRY_IMPORTED));
+		} else if (!imported.isEmpty()) {
+			events.add(new KeystoreEvent(source, KeystoreEvent.ENTRY_IMPORTED,
+					imported.toArray(new String[imported.size()])));
+		}
+
+		discard();
+
+		return events;
+	}
+
+	/**
+	 * Dispatch Events To Listeners
+	 * 
+	 * @param events Keystore Events
+	 */
+	private void dispatch(final List<KeystoreEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+
+		if (!swingListeners.isEmpty()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					deliver(swingListeners, events);
+				}
+			});
+		}
+
+		if (!backgroundListeners.isEmpty() && !executor.isShutdown()) {
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						deliver(backgroundListeners, events);
+					}
+				});
+			} catch (RejectedExecutionException err) {
+				// Shut down meanwhile
+			}
+		}
+	}
+
+	/**
+	 * Deliver Events
+	 * 
+	 * @param listeners Keystore Listeners
+	 * @param events Keystore Events
+	 */
+	private static void deliver(List<KeystoreListener> listeners,
+			List<KeystoreEvent> events) {
+		for (int e = 0; e < events.size(); e++) {
+			KeystoreEvent evt = events.get(e);
+
+			for (KeystoreListener listener : listeners) {
+				try {
+					switch (evt.getType()) {
+					case KeystoreEvent.ENTRY_IMPORTED:
+						listener.entryImported(evt);
+						break;
+					case KeystoreEvent.ENTRY_DELETED:
+						listener.entryDeleted(evt);
+						break;
+					case KeystoreEvent.KEYSTORE_LOADED:
+						listener.keyStoreLoaded(evt);
+						break;
+					case KeystoreEvent.KEYSTORE_SAVED:
+						listener.keyStoreSaved(evt);
+						break;
+					default:
+						break;
+					}
+				} catch (RuntimeException err) {
+					err.printStackTrace();
+				}
+			}
+		}
+	}
+}
@@ -44,5 +44,12 @@ public interface KeystoreListener {
 	 * @param evt 
 	 */
 	public void keyStoreLoaded(KeystoreEvent evt);
+
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt 
+	 */
+	public void keyStoreSaved(KeystoreEvent evt);
 	
 }
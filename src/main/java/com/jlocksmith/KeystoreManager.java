@@ -17,14 +17,13 @@
  */
 package com.jlocksmith;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStore.PrivateKeyEntry;
@@ -42,42 +41,91 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.jlocksmith.util.CertificateUtil;
+import com.jlocksmith.util.KeyUtil;
+import com.jlocksmith.util.PemEncoder;
 
 /**
- * Key Store Manager Singleton
+ * Key Store Manager Singleton. Safe for use from several threads, reads of
+ * the store share a read lock and run in parallel while mutations, batches
+ * and loads hold the write lock.
  * 
  * @author Derek Helbert
  */
 public class KeystoreManager {
 
-	/** Key Store Manager */
-	private static KeystoreManager manager;
+	/** Lock, Reads Share The Read Lock, Mutations Hold The Write Lock */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
 	/** Key Store */
-	private KeyStore keyStore;
+	private volatile KeyStore keyStore;
 
-	/** Listeners */
-	private List<KeystoreListener> listeners = new ArrayList<KeystoreListener>();
+	/** Event Bus */
+	private KeystoreEventBus events = new KeystoreEventBus(this);
+
+	/** Fingerprint Index, Built On First Use */
+	private volatile FingerprintIndex fingerprints = null;
+
+	/** Guards Creation Of The Indexes */
+	private final Object indexLock = new Object();
+
+	/** Expiry Index, Built On First Use */
+	private volatile ExpiryIndex expiries = null;
 
 	/** Loaded Flag */
-	private boolean loaded = false;
+	private volatile boolean loaded = false;
 
 	/** Loaded Flag */
-	private boolean updated = false;
+	private volatile boolean updated = false;
 
 	/** File Path */
-	private String filePath;
+	private volatile String filePath;
 
 	/** File Path */
-	private String keystorePassword;
+	private volatile String keystorePassword;
+
+	/** File Length When Last Loaded Or Saved */
+	private volatile long fileLength = -1;
+
+	/** File Modification Time When Last Loaded Or Saved */
+	private volatile long fileModified = -1;
+
+	/** Modification Count, Guarded By The Lock */
+	private int modCount = 0;
+
+	/** Open Batch */
+	private volatile KeystoreBatch batch = null;
+
+	/** Signalled When A Batch Ends */
+	private final Condition batchEnded = lock.writeLock().newCondition();
+
+	/** Snapshot Password For Stores Without A Password */
+	private static final String SNAPSHOT_PASSWORD = "jlocksmith";
+
+	/** Background Saver */
+	private ExecutorService saver = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "jlocksmith-save");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 
 	/**
-	 * Private Constructor
+	 * Constructor. The application store is kept by getInstance, further
+	 * stores are opened through KeystoreSessions.
 	 * 
 	 */
-	private KeystoreManager() {
+	public KeystoreManager() {
 	}
 
 	/**
@@ -86,12 +134,7 @@ public class KeystoreManager {
 	 * @return KeystoreManager
 	 */
 	public final static KeystoreManager getInstance() {
-		if (manager == null) {
-			manager = new KeystoreManager();
-			return manager;
-		} else {
-			return manager;
-		}
+		return Holder.MANAGER;
 	}
 
 	/**
@@ -100,7 +143,19 @@ public class KeystoreManager {
 	 * @return Certificate
 	 */
 	public Certificate getCertificate(String alias) throws KeyStoreException {
-		return keyStore.getCertificate(alias);
+		lock.readLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null && b.isStaged(alias)) {
+				return b.getCertificate(alias);
+			}
+
+			return keyStore.getCertificate(alias);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -110,7 +165,19 @@ public class KeystoreManager {
 	 */
 	public Certificate[] getCertificateChain(String alias)
 			throws KeyStoreException {
-		return keyStore.getCertificateChain(alias);
+		lock.readLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null && b.isStaged(alias)) {
+				return b.getCertificateChain(alias);
+			}
+
+			return keyStore.getCertificateChain(alias);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -132,7 +199,19 @@ public class KeystoreManager {
 	 */
 	public Key getKey(String alias, String password) throws KeyStoreException,
 			UnrecoverableKeyException, NoSuchAlgorithmException {
-		return keyStore.getKey(alias, password.toCharArray());
+		lock.readLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null && b.isStaged(alias)) {
+				return b.getKey(alias);
+			}
+
+			return keyStore.getKey(alias, password.toCharArray());
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -141,7 +220,13 @@ public class KeystoreManager {
 	 * @return Provider
 	 */
 	public Provider getProvider() {
-		return keyStore.getProvider();
+		lock.readLock().lock();
+
+		try {
+			return keyStore.getProvider();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -151,13 +236,50 @@ public class KeystoreManager {
 	 * @throws KeyStoreException
 	 */
 	public List<String> getAliases() throws KeyStoreException {
-		List<String> list = new ArrayList<String>();
+		lock.readLock().lock();
+
+		try {
+			List<String> list = new ArrayList<String>();
+
+			for (Enumeration<String> e = keyStore.aliases(); e.hasMoreElements();) {
+				list.add(e.nextElement());
+			}
+
+			KeystoreBatch b = staging();
 
-		for (Enumeration<String> e = keyStore.aliases(); e.hasMoreElements();) {
-			list.add(e.nextElement());
+			return b == null ? list : b.mergeAliases(list);
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
 
-		return list;
+	/**
+	 * Contains Alias
+	 * 
+	 * @param alias
+	 * 
+	 * @return boolean
+	 */
+	public boolean containsAlias(String alias) {
+		lock.readLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null && b.isStaged(alias)) {
+				return b.containsAlias(alias);
+			}
+
+			try {
+				return keyStore.containsAlias(alias);
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
+
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -176,8 +298,22 @@ public class KeystoreManager {
 	 * @throws Exception
 	 */
 	public void deleteEntry(String alias) throws KeyStoreException {
-		keyStore.deleteEntry(alias);
-		processEntryDeleted(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null) {
+				b.deleteEntry(alias);
+				return;
+			}
+
+			keyStore.deleteEntry(alias);
+			processEntryDeleted(new KeystoreEvent(this,
+					KeystoreEvent.ENTRY_DELETED, alias));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -209,13 +345,25 @@ public class KeystoreManager {
 	 * @throws Exception
 	 */
 	public boolean isCertificateEntry(String alias) {
+		lock.readLock().lock();
+
 		try {
-			return keyStore.isCertificateEntry(alias);
-		} catch (Exception err) {
-			err.printStackTrace();
-		}
+			KeystoreBatch b = staging();
 
-		return false;
+			if (b != null && b.isStaged(alias)) {
+				return b.isCertificateEntry(alias);
+			}
+
+			try {
+				return keyStore.isCertificateEntry(alias);
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
+
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -228,11 +376,27 @@ public class KeystoreManager {
 	 */
 	public void renameCertificateEntry(String alias, String newAlias)
 			throws KeyStoreException {
-		if (isCertificateEntry(alias)) {
-			Certificate temp = getCertificate(alias);
-			setCertificateEntry(newAlias, temp);
-			deleteEntry(alias);
-			processEntryImported(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			if (isCertificateEntry(alias)) {
+				boolean committed = false;
+				beginBatch();
+
+				try {
+					Certificate temp = getCertificate(alias);
+					setCertificateEntry(newAlias, temp);
+					deleteEntry(alias);
+					commit();
+					committed = true;
+				} finally {
+					if (!committed) {
+						rollback();
+					}
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -250,19 +414,34 @@ public class KeystoreManager {
 	public void renameKeyEntry(String alias, String newAlias, String passw)
 			throws KeyStoreException, UnrecoverableKeyException,
 			NoSuchAlgorithmException {
-		if (isKeyEntry(alias)) {
-			if (isKeyPairEntry(alias)) {
-				Key temp = getKey(alias, passw);
-				Certificate[] chain = getCertificateChain(alias);
-				setKeyEntry(newAlias,temp,passw,chain);
-				deleteEntry(alias);
-				processEntryImported(new KeystoreEvent(this));
-			} else {
-				Key temp = getKey(alias, passw);
-				setKeyEntry(newAlias,temp,passw,new Certificate[0]);
-				deleteEntry(alias);
-				processEntryImported(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			if (isKeyEntry(alias)) {
+				boolean committed = false;
+				beginBatch();
+
+				try {
+					if (isKeyPairEntry(alias)) {
+						Key temp = getKey(alias, passw);
+						Certificate[] chain = getCertificateChain(alias);
+						setKeyEntry(newAlias,temp,passw,chain);
+					} else {
+						Key temp = getKey(alias, passw);
+						setKeyEntry(newAlias,temp,passw,new Certificate[0]);
+					}
+
+					deleteEntry(alias);
+					commit();
+					committed = true;
+				} finally {
+					if (!committed) {
+						rollback();
+					}
+				}
 			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
@@ -273,13 +452,19 @@ public class KeystoreManager {
 	 * @throws Exception
 	 */
 	public Date getCreationDate(String alias) {
+		lock.readLock().lock();
+
 		try {
-			return keyStore.getCreationDate(alias);
-		} catch (Exception err) {
-			err.printStackTrace();
-		}
+			try {
+				return keyStore.getCreationDate(alias);
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
 
-		return null;
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -352,16 +537,68 @@ public class KeystoreManager {
 	public void cloneKey(String alias, String newalias, String passwd)
 			throws KeyStoreException, UnrecoverableKeyException,
 			NoSuchAlgorithmException {
-		if (entryInstanceOfPrivateKey(alias)) {
-			Certificate[] chain = getCertificateChain(alias);
-			Key key = (Key) getKey(alias, passwd);
-			keyStore.setKeyEntry(newalias, key, passwd.toCharArray(), chain);
-			processEntryImported(new KeystoreEvent(this));
-		} else {
-			Key key = getKey(alias, passwd);
-			keyStore.setKeyEntry(newalias, key, passwd.toCharArray(), null);
-			processEntryImported(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			if (entryInstanceOfPrivateKey(alias)) {
+				Certificate[] chain = getCertificateChain(alias);
+				Key key = (Key) getKey(alias, passwd);
+				setKeyEntry(newalias, key, passwd, chain);
+			} else {
+				Key key = getKey(alias, passwd);
+				setKeyEntry(newalias, key, passwd, null);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Copy Key Entry To Another Manager. The key and chain are taken from this
+	 * store in memory, no file is read.
+	 * 
+	 * @param alias Alias
+	 * @param passwd Key Password
+	 * @param target Target Manager
+	 * @param targetAlias Target Alias
+	 * @param targetPasswd Target Key Password
+	 * 
+	 * @throws KeyStoreException
+	 * @throws UnrecoverableKeyException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public void copyKeyEntry(String alias, String passwd,
+			KeystoreManager target, String targetAlias, String targetPasswd)
+			throws KeyStoreException, UnrecoverableKeyException,
+			NoSuchAlgorithmException {
+		Key key = getKey(alias, passwd);
+
+		if (key == null) {
+			throw new KeyStoreException("No key entry " + alias);
+		}
+
+		target.setKeyEntry(targetAlias, key, targetPasswd,
+				getCertificateChain(alias));
+	}
+
+	/**
+	 * Copy Certificate Entry To Another Manager
+	 * 
+	 * @param alias Alias
+	 * @param target Target Manager
+	 * @param targetAlias Target Alias
+	 * 
+	 * @throws KeyStoreException
+	 */
+	public void copyCertificateEntry(String alias, KeystoreManager target,
+			String targetAlias) throws KeyStoreException {
+		Certificate cert = getCertificate(alias);
+
+		if (cert == null) {
+			throw new KeyStoreException("No certificate entry " + alias);
 		}
+
+		target.setCertificateEntry(targetAlias, cert);
 	}
 
 	/**
@@ -376,7 +613,13 @@ public class KeystoreManager {
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public boolean entryInstanceOf(String alias, Class c) throws KeyStoreException {
-		return keyStore.entryInstanceOf(alias, c);
+		lock.readLock().lock();
+
+		try {
+			return keyStore.entryInstanceOf(alias, c);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -386,41 +629,61 @@ public class KeystoreManager {
 	 * @throws Exception
 	 */
 	public boolean isKeyEntry(String alias) {
+		lock.readLock().lock();
+
 		try {
-			return keyStore.isKeyEntry(alias);
-		} catch (Exception err) {
-			err.printStackTrace();
-		}
+			KeystoreBatch b = staging();
 
-		return false;
+			if (b != null && b.isStaged(alias)) {
+				return b.isKeyEntry(alias);
+			}
+
+			try {
+				return keyStore.isKeyEntry(alias);
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
+
+			return false;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
-	 * Export Certificate to File
+	 * Export Certificate to PEM File
 	 * 
 	 * @param alias Certificate Alias
 	 * @param path File Path
 	 * 
-	 * @throws Exception
+	 * @throws IOException
+	 * @throws CertificateEncodingException
+	 * @throws KeyStoreException
 	 */
-	@SuppressWarnings("restriction")
 	public void exportBase64Certificate(String alias, String path)
 			throws IOException, CertificateEncodingException, KeyStoreException {
-		Certificate cert = keyStore.getCertificate(alias);
+		Certificate cert = getCertificate(alias);
+
+		if (cert == null) {
+			throw new KeyStoreException("No certificate for " + alias);
+		}
 
 		// Get the encoded form which is suitable for exporting
 		byte[] buf = cert.getEncoded();
+		ByteBuffer pem = ByteBuffer.allocate(PemEncoder.getEncodedLength(
+				PemEncoder.CERTIFICATE, buf.length));
+		PemEncoder.encode(PemEncoder.CERTIFICATE, buf, pem);
+		pem.flip();
 
-		FileOutputStream os = new FileOutputStream(new File(path));
-
-		// Write in text form
-		Writer wr = new OutputStreamWriter(os, Charset.forName("UTF-8"));
-		wr.write(CertificateUtil.BEGIN_CERTICATE);
-		wr.write(new sun.misc.BASE64Encoder().encode(buf));
-		wr.write(CertificateUtil.END_CERTIFICATE);
-		wr.flush();
+		FileChannel channel = new FileOutputStream(new File(path)).getChannel();
 
-		os.close();
+		try {
+			while (pem.hasRemaining()) {
+				channel.write(pem);
+			}
+		} finally {
+			channel.close();
+		}
 	}
 
 	/**
@@ -434,9 +697,7 @@ public class KeystoreManager {
 	 */
 	public void importX509Certificate(String alias, String path)
 			throws CertificateException, IOException, KeyStoreException {
-		Certificate cert = CertificateUtil.readX509Certificate(path);
-		keyStore.setCertificateEntry(alias, cert);
-		processEntryImported(new KeystoreEvent(this));
+		setCertificateEntry(alias, CertificateUtil.readX509Certificate(path));
 	}
 
 	/**
@@ -450,8 +711,22 @@ public class KeystoreManager {
 	 */
 	public void setCertificateEntry(String alias, Certificate cert)
 			throws KeyStoreException {
-		keyStore.setCertificateEntry(alias, cert);
-		processEntryImported(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null) {
+				b.setCertificateEntry(alias, cert);
+				return;
+			}
+
+			keyStore.setCertificateEntry(alias, cert);
+			processEntryImported(new KeystoreEvent(this,
+					KeystoreEvent.ENTRY_IMPORTED, alias));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -466,8 +741,22 @@ public class KeystoreManager {
 	 */
 	public void setKeyEntry(String alias, Key key, String passwd,
 			Certificate[] chain) throws KeyStoreException {
-		keyStore.setKeyEntry(alias, key, passwd.toCharArray(), chain);
-		processEntryImported(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b != null) {
+				b.setKeyEntry(alias, key, passwd.toCharArray(), chain);
+				return;
+			}
+
+			keyStore.setKeyEntry(alias, key, passwd.toCharArray(), chain);
+			processEntryImported(new KeystoreEvent(this,
+					KeystoreEvent.ENTRY_IMPORTED, alias));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -476,7 +765,13 @@ public class KeystoreManager {
 	 * @return String
 	 */
 	public final String getKeyStoreType() {
-		return keyStore.getType();
+		lock.readLock().lock();
+
+		try {
+			return keyStore.getType();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -485,7 +780,17 @@ public class KeystoreManager {
 	 * @return int
 	 */
 	public final int getSize() throws KeyStoreException {
-		return keyStore.size();
+		lock.readLock().lock();
+
+		try {
+			if (staging() != null) {
+				return getAliases().size();
+			}
+
+			return keyStore.size();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	/**
@@ -515,13 +820,9 @@ public class KeystoreManager {
 	public final void loadKeyStore(String path, String password)
 			throws CertificateException, IOException, NoSuchAlgorithmException,
 			KeyStoreException {
-		keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-		keyStore.load(new FileInputStream(new File(path)), password
-				.toCharArray());
-		loaded = true;
-		filePath = path;
-		keystorePassword = password;
-		processKeystoreLoaded(new KeystoreEvent(this));
+		KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+		KeyUtil.loadKeyStore(ks, path, password);
+		install(ks, path, password);
 	}
 
 	/**
@@ -542,13 +843,45 @@ public class KeystoreManager {
 			String prov) throws CertificateException, IOException,
 			NoSuchAlgorithmException, KeyStoreException,
 			NoSuchProviderException {
-		keyStore = KeyStore.getInstance(type, prov);
-		keyStore.load(new FileInputStream(new File(path)), password
-				.toCharArray());
-		loaded = true;
-		filePath = path;
-		keystorePassword = password;
-		processKeystoreLoaded(new KeystoreEvent(this));
+		KeyStore ks = KeyStore.getInstance(type, prov);
+		KeyUtil.loadKeyStore(ks, path, password);
+		install(ks, path, password);
+	}
+
+	/**
+	 * Set Key Store Loaded From The Path
+	 * 
+	 * @param ks Loaded Key Store
+	 * @param path File Path
+	 * @param password Key Store Password
+	 */
+	public void setKeyStore(KeyStore ks, String path, String password) {
+		install(ks, path, password);
+	}
+
+	/**
+	 * Install Loaded Key Store
+	 * 
+	 * @param ks Key Store
+	 * @param path File Path
+	 * @param password Key Store Password
+	 */
+	private void install(KeyStore ks, String path, String password) {
+		lock.writeLock().lock();
+
+		try {
+			keyStore = ks;
+			batch = null;
+			batchEnded.signalAll();
+			loaded = true;
+			filePath = path;
+			keystorePassword = password;
+			stamp(path);
+			processKeystoreLoaded(new KeystoreEvent(this,
+					KeystoreEvent.KEYSTORE_LOADED));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -562,11 +895,21 @@ public class KeystoreManager {
 	 */
 	public void newKeyStore() throws CertificateException, KeyStoreException,
 			NoSuchAlgorithmException, IOException {
-		keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-		keyStore.load(null, null);
-		filePath = null;
-		keystorePassword = null;
-		processKeystoreLoaded(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+			keyStore.load(null, null);
+			batch = null;
+			batchEnded.signalAll();
+			filePath = null;
+			keystorePassword = null;
+			stamp(null);
+			processKeystoreLoaded(new KeystoreEvent(this,
+					KeystoreEvent.KEYSTORE_LOADED));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -584,35 +927,356 @@ public class KeystoreManager {
 	public void newKeyStore(String type, String prov)
 			throws CertificateException, KeyStoreException,
 			NoSuchAlgorithmException, IOException, NoSuchProviderException {
-		keyStore = KeyStore.getInstance(type, prov);
-		keyStore.load(null, null);
-		filePath = null;
-		keystorePassword = null;
-		processKeystoreLoaded(new KeystoreEvent(this));
+		lock.writeLock().lock();
+
+		try {
+			keyStore = KeyStore.getInstance(type, prov);
+			keyStore.load(null, null);
+			batch = null;
+			batchEnded.signalAll();
+			filePath = null;
+			keystorePassword = null;
+			stamp(null);
+			processKeystoreLoaded(new KeystoreEvent(this,
+					KeystoreEvent.KEYSTORE_LOADED));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
-	 * Add Keystore Listener
+	 * Begin Batch. Until commit or rollback, mutations made by the calling
+	 * thread are staged instead of changing the key store, reads by the
+	 * calling thread see the staged state. Batches may be nested, only the
+	 * outermost commit applies them. Waits while another thread has a batch
+	 * open.
+	 * 
+	 */
+	public void beginBatch() {
+		lock.writeLock().lock();
+
+		try {
+			while (batch != null && batch.getOwner() != Thread.currentThread()) {
+				batchEnded.awaitUninterruptibly();
+			}
+
+			if (batch == null) {
+				batch = new KeystoreBatch(Thread.currentThread());
+			} else {
+				batch.enter();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Commit Batch. Staged mutations are applied in one pass and reported in
+	 * one aggregated event, if any of them fails the previous entries of the
+	 * staged aliases are restored. The key store is only serialized for the
+	 * restore when a touched key entry can not be read with the passwords at
+	 * hand.
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IllegalStateException if the calling thread has no batch open
+	 */
+	public void commit() throws KeyStoreException {
+		lock.writeLock().lock();
+
+		try {
+			KeystoreBatch b = staging();
+
+			if (b == null) {
+				throw new IllegalStateException("No batch open");
+			}
+
+			if (!b.leave()) {
+				return;
+			}
+
+			batch = null;
+			batchEnded.signalAll();
+
+			if (b.isEmpty()) {
+				return;
+			}
+
+			String password = keystorePassword == null ? SNAPSHOT_PASSWORD
+					: keystorePassword;
+			KeystoreBatch undo = b.prepareUndo(keyStore,
+					keystorePassword == null ? null : keystorePassword
+							.toCharArray());
+			byte[] snapshot = null;
+
+			if (undo == null) {
+				try {
+					snapshot = KeyUtil.serializeKeyStore(keyStore, password);
+				} catch (KeyStoreException err) {
+					throw err;
+				} catch (Exception err) {
+					throw new KeyStoreException(err);
+				}
+			}
+
+			try {
+				b.apply(keyStore);
+			} catch (KeyStoreException err) {
+				undo(undo, snapshot, password);
+				throw err;
+			} catch (RuntimeException err) {
+				undo(undo, snapshot, password);
+				throw err;
+			}
+
+			String[] deleted = b.getDeleted();
+			String[] imported = b.getImported();
+
+			events.hold();
+
+			try {
+				if (deleted.length > 0) {
+					processEntryDeleted(new KeystoreEvent(this,
+							KeystoreEvent.ENTRY_DELETED, deleted));
+				}
+
+				if (imported.length > 0) {
+					processEntryImported(new KeystoreEvent(this,
+							KeystoreEvent.ENTRY_IMPORTED, imported));
+				}
+			} finally {
+				events.release();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rollback Batch. Staged mutations are discarded, including those of
+	 * enclosing batches.
+	 * 
+	 */
+	public void rollback() {
+		lock.writeLock().lock();
+
+		try {
+			if (staging() != null) {
+				batch = null;
+				batchEnded.signalAll();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Is Batch Open For The Calling Thread
+	 * 
+	 * @return boolean
+	 */
+	public boolean isBatchOpen() {
+		return staging() != null;
+	}
+
+	/**
+	 * Get Batch Of The Calling Thread
+	 * 
+	 * @return KeystoreBatch or null
+	 */
+	private KeystoreBatch staging() {
+		KeystoreBatch b = batch;
+
+		if (b != null && b.getOwner() == Thread.currentThread()) {
+			return b;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Undo Failed Apply. A failure to undo is printed, so the failure of the
+	 * apply is the one reported.
+	 * 
+	 * @param undo Undo Log or null
+	 * @param snapshot Serialized Key Store, used without an undo log
+	 * @param password Snapshot Password
+	 */
+	private void undo(KeystoreBatch undo, byte[] snapshot, String password) {
+		try {
+			if (undo != null) {
+				undo.revert(keyStore);
+			} else {
+				restore(snapshot, password);
+			}
+		} catch (Exception err) {
+			err.printStackTrace();
+		}
+	}
+
+	/**
+	 * Restore Key Store From Snapshot
+	 * 
+	 * @param snapshot Serialized Key Store
+	 * @param password Snapshot Password
+	 * 
+	 * @throws KeyStoreException
+	 */
+	private void restore(byte[] snapshot, String password)
+			throws KeyStoreException {
+		try {
+			KeyStore restored = KeyStore.getInstance(keyStore.getType(),
+					keyStore.getProvider());
+			restored.load(new ByteArrayInputStream(snapshot), password
+					.toCharArray());
+			keyStore = restored;
+		} catch (KeyStoreException err) {
+			throw err;
+		} catch (Exception err) {
+			throw new KeyStoreException(err);
+		}
+	}
+
+	/**
+	 * Add Keystore Listener Called On The Event Dispatch Thread
 	 * 
 	 * @param listener Keystore Listener
 	 */
 	public void addKeystoreListener(KeystoreListener listener) {
-		listeners.add(listener);
+		events.addSwingListener(listener);
 	}
 
 	/**
-	 * Process Certificate Imported
+	 * Add Keystore Listener Called On The Background Event Thread
 	 * 
-	 * @param evt Key Store Event
+	 * @param listener Keystore Listener
 	 */
-	private void processEntryImported(KeystoreEvent evt) {
-		KeystoreListener listener;
+	public void addBackgroundKeystoreListener(KeystoreListener listener) {
+		events.addBackgroundListener(listener);
+	}
 
-		for (int i = 0; i < listeners.size(); i++) {
-			listener = (KeystoreListener) listeners.get(i);
-			listener.entryImported(evt);
+	/**
+	 * Remove Keystore Listener
+	 * 
+	 * @param listener Keystore Listener
+	 */
+	public void removeKeystoreListener(KeystoreListener listener) {
+		events.removeListener(listener);
+	}
+
+	/**
+	 * Get Event Bus
+	 * 
+	 * @return KeystoreEventBus
+	 */
+	public KeystoreEventBus getEventBus() {
+		return events;
+	}
+
+	/**
+	 * Get Fingerprint Index. The index is built on first use and kept up to
+	 * date by the background event thread from then on, call
+	 * syncFingerprintIndex to include changes just made. Building it digests
+	 * every certificate, so the first use should not be on the event
+	 * dispatch thread.
+	 * 
+	 * @return FingerprintIndex
+	 */
+	public FingerprintIndex getFingerprintIndex() {
+		FingerprintIndex index = fingerprints;
+
+		if (index == null) {
+			synchronized (indexLock) {
+				index = fingerprints;
+
+				if (index == null) {
+					index = new FingerprintIndex(this);
+					events.addBackgroundListener(index);
+					index.rebuild();
+					fingerprints = index;
+				}
+			}
 		}
 
+		return index;
+	}
+
+	/**
+	 * Sync Fingerprint Index. Builds the index if needed and waits until it
+	 * holds every committed change. Must not be called holding the key store
+	 * lock, there the index is returned as it is.
+	 * 
+	 * @return FingerprintIndex
+	 */
+	public FingerprintIndex syncFingerprintIndex() {
+		FingerprintIndex index = getFingerprintIndex();
+
+		// The event thread reads the key store to update the index
+		if (lock.getReadHoldCount() == 0 && !lock.isWriteLockedByCurrentThread()) {
+			events.sync();
+		}
+
+		return index;
+	}
+
+	/**
+	 * Find Aliases By SHA-1 Or SHA-256 Fingerprint
+	 * 
+	 * @param fingerprint Hex Fingerprint
+	 * 
+	 * @return List
+	 */
+	public List<String> findByFingerprint(String fingerprint) {
+		return syncFingerprintIndex().find(fingerprint);
+	}
+
+	/**
+	 * Find Duplicates. Aliases of committed entries holding the certificate,
+	 * used by importers to warn before setCertificateEntry stores it again.
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return List
+	 * 
+	 * @throws CertificateEncodingException
+	 */
+	public List<String> findDuplicates(Certificate cert)
+			throws CertificateEncodingException {
+		return syncFingerprintIndex().find(cert);
+	}
+
+	/**
+	 * Get Expiry Index. The index is built on first use and kept up to date
+	 * by the background event thread from then on.
+	 * 
+	 * @return ExpiryIndex
+	 */
+	public ExpiryIndex getExpiryIndex() {
+		ExpiryIndex index = expiries;
+
+		if (index == null) {
+			synchronized (indexLock) {
+				index = expiries;
+
+				if (index == null) {
+					index = new ExpiryIndex(this);
+					events.addBackgroundListener(index);
+					index.rebuild();
+					expiries = index;
+				}
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Process Certificate Imported
+	 * 
+	 * @param evt Key Store Event
+	 */
+	private void processEntryImported(KeystoreEvent evt) {
+		events.post(evt);
+		modCount++;
 		updated = true;
 	}
 
@@ -622,13 +1286,8 @@ public class KeystoreManager {
 	 * @param evt Keystore Event
 	 */
 	private void processEntryDeleted(KeystoreEvent evt) {
-		KeystoreListener listener;
-
-		for (int i = 0; i < listeners.size(); i++) {
-			listener = (KeystoreListener) listeners.get(i);
-			listener.entryDeleted(evt);
-		}
-
+		events.post(evt);
+		modCount++;
 		updated = true;
 	}
 
@@ -638,18 +1297,21 @@ public class KeystoreManager {
 	 * @param evt Keystore Event
 	 */
 	private void processKeystoreLoaded(KeystoreEvent evt) {
-		KeystoreListener listener;
-
-		for (int i = 0; i < listeners.size(); i++) {
-			listener = (KeystoreListener) listeners.get(i);
-			listener.keyStoreLoaded(evt);
-		}
-
+		events.post(evt);
 		updated = false;
 	}
 
 	/**
-	 * Store Key Store
+	 * Process Keystore Saved
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void processKeystoreSaved(KeystoreEvent evt) {
+		events.post(evt);
+	}
+
+	/**
+	 * Store Key Store. The file is replaced atomically.
 	 * 
 	 * @param path File Path
 	 * @param password Key Store Password
@@ -662,12 +1324,121 @@ public class KeystoreManager {
 	public final void storeKeyStore(String path, String password)
 			throws FileNotFoundException, IOException, CertificateException,
 			KeyStoreException, NoSuchAlgorithmException {
-		FileOutputStream fos = new FileOutputStream(path);
-		keyStore.store(fos, password.toCharArray());
-		fos.close();
-		filePath = path;
-		keystorePassword = password;
-		updated = false;
+		KeyStore ks;
+		byte[] data;
+		int saved;
+
+		lock.readLock().lock();
+
+		try {
+			ks = keyStore;
+			saved = modCount;
+			data = KeyUtil.serializeKeyStore(ks, password);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		KeyUtil.writeAtomically(path, data);
+		saved(ks, path, password, saved);
+		processKeystoreSaved(new KeystoreEvent(this, path, null));
+	}
+
+	/**
+	 * Record Completed Save
+	 * 
+	 * @param ks Saved Key Store
+	 * @param path File Path
+	 * @param password Key Store Password
+	 * @param saved Modification Count Saved
+	 */
+	private void saved(KeyStore ks, String path, String password, int saved) {
+		lock.writeLock().lock();
+
+		try {
+			if (ks == keyStore) {
+				filePath = path;
+				keystorePassword = password;
+				updated = modCount != saved;
+				stamp(path);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Save Key Store In Background. The store is serialized into memory and
+	 * written to a temporary file which atomically replaces the target,
+	 * listeners are told of the outcome through the event bus.
+	 * 
+	 * @param path File Path
+	 * @param password Key Store Password
+	 * 
+	 * @return Future
+	 */
+	public Future<?> saveKeyStore(final String path, final String password) {
+		final KeyStore ks = keyStore;
+
+		return saver.submit(new Runnable() {
+			public void run() {
+				Exception error = null;
+
+				try {
+					byte[] data;
+					int saved;
+
+					lock.readLock().lock();
+
+					try {
+						saved = modCount;
+						data = KeyUtil.serializeKeyStore(ks, password);
+					} finally {
+						lock.readLock().unlock();
+					}
+
+					KeyUtil.writeAtomically(path, data);
+					saved(ks, path, password, saved);
+				} catch (Exception err) {
+					err.printStackTrace();
+					error = err;
+				}
+
+				processKeystoreSaved(new KeystoreEvent(KeystoreManager.this,
+						path, error));
+			}
+		});
+	}
+
+	/**
+	 * Wait For Pending Saves
+	 * 
+	 * @param millis Maximum Wait In Milliseconds
+	 * 
+	 * @return boolean true if all saves completed
+	 */
+	public boolean awaitSaves(long millis) {
+		Future<?> marker = saver.submit(new Runnable() {
+			public void run() {
+			}
+		});
+
+		try {
+			marker.get(millis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (Exception err) {
+			return false;
+		}
+	}
+
+	/**
+	 * Close. Saves already submitted are still written, the save and event
+	 * threads stop once they are idle. The manager must not be used
+	 * afterwards.
+	 * 
+	 */
+	public void close() {
+		saver.shutdown();
+		events.shutdown();
 	}
 
 	/**
@@ -679,6 +1450,40 @@ public class KeystoreManager {
 		this.keystorePassword = passwd;
 	}
 
+	/**
+	 * Is File Changed. Tells whether the file was modified by someone else
+	 * since this manager last loaded or saved it.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isFileChanged() {
+		String path = filePath;
+
+		if (path == null) {
+			return false;
+		}
+
+		File file = new File(path);
+
+		return file.length() != fileLength || file.lastModified() != fileModified;
+	}
+
+	/**
+	 * Record File Length And Modification Time
+	 * 
+	 * @param path File Path or null
+	 */
+	private void stamp(String path) {
+		if (path == null) {
+			fileLength = -1;
+			fileModified = -1;
+		} else {
+			File file = new File(path);
+			fileLength = file.length();
+			fileModified = file.lastModified();
+		}
+	}
+
 	/**
 	 * Is Keystore Updated
 	 * 
@@ -687,4 +1492,14 @@ public class KeystoreManager {
 	public boolean isUpdated() {
 		return updated;
 	}
+
+	/**
+	 * Lazy Holder, Class Initialization Publishes The Instance Safely
+	 * 
+	 */
+	private static class Holder {
+
+		/** Key Store Manager */
+		static final KeystoreManager MANAGER = new KeystoreManager();
+	}
 }
@@ -0,0 +1,353 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Key Store Sessions. Keeps key stores open by file path, each in its own
+ * key store manager with its own listeners, so entries can be copied between
+ * stores in memory instead of reloading files. Sessions opened here are
+ * reloaded when their file changes on disk and the least recently used ones
+ * without unsaved changes are closed once more than MAX_SESSIONS are open.
+ * A file is opened by one caller at a time, so it is loaded once.
+ * 
+ * @author Derek Helbert
+ */
+public class KeystoreSessions {
+
+	/** Maximum Number Of Sessions Opened Here */
+	public static final int MAX_SESSIONS = 8;
+
+	/** Sessions */
+	private static KeystoreSessions sessions;
+
+	/** Sessions By Canonical Path, Least Recently Used First */
+	private Map<String, Session> managers = new LinkedHashMap<String, Session>(
+			16, 0.75f, true);
+
+	/** Open Locks By Canonical Path */
+	private Map<String, Object> locks = new HashMap<String, Object>();
+
+	/**
+	 * Private Constructor
+	 * 
+	 */
+	private KeystoreSessions() {
+	}
+
+	/**
+	 * Get Instance
+	 * 
+	 * @return KeystoreSessions
+	 */
+	public static synchronized KeystoreSessions getInstance() {
+		if (sessions == null) {
+			sessions = new KeystoreSessions();
+		}
+
+		return sessions;
+	}
+
+	/**
+	 * Open Key Store. An open session of the file is returned as it is,
+	 * including changes not saved yet, if the password and type match and
+	 * the file was not changed by someone else since. A changed file is
+	 * loaded again, unless the session has unsaved changes or belongs to a
+	 * registered manager. A session with unsaved changes is not replaced by
+	 * opening its file with another password or type either.
+	 * 
+	 * @param path File Path
+	 * @param password Key Store Password
+	 * @param type Key Store Type
+	 * @param prov Provider Name
+	 * 
+	 * @return KeystoreManager
+	 * 
+	 * @throws CertificateException
+	 * @throws IOException if the file of a session that is not reloaded
+	 *             changed, or a session with unsaved changes would be
+	 *             replaced
+	 * @throws NoSuchAlgorithmException
+	 * @throws KeyStoreException
+	 * @throws NoSuchProviderException
+	 */
+	public KeystoreManager open(String path, String password, String type,
+			String prov) throws CertificateException, IOException,
+			NoSuchAlgorithmException, KeyStoreException,
+			NoSuchProviderException {
+		String key = key(path);
+		Object openLock;
+
+		synchronized (this) {
+			openLock = locks.get(key);
+
+			if (openLock == null) {
+				openLock = new Object();
+				locks.put(key, openLock);
+			}
+		}
+
+		synchronized (openLock) {
+			Session session;
+
+			synchronized (this) {
+				session = session(key);
+			}
+
+			if (session != null) {
+				if (password.equals(session.manager.getKeystorePassword())
+						&& type.equalsIgnoreCase(session.manager
+								.getKeyStoreType())) {
+					if (!session.manager.isFileChanged()) {
+						return session.manager;
+					}
+
+					if (!session.owned || session.manager.isUpdated()) {
+						throw new IOException(path
+								+ " was changed on disk since it was opened");
+					}
+				} else if (session.owned && session.manager.isUpdated()) {
+					throw new IOException(path
+							+ " is open with unsaved changes");
+				}
+			}
+
+			KeystoreManager manager = new KeystoreManager();
+			boolean loaded = false;
+
+			try {
+				manager.loadKeyStore(path, password, type, prov);
+				loaded = true;
+			} finally {
+				if (!loaded) {
+					manager.close();
+				}
+			}
+
+			put(key, new Session(manager, true));
+
+			return manager;
+		}
+	}
+
+	/**
+	 * Register Manager Under Its Current File Path. Registered managers are
+	 * never closed by the sessions.
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public void register(KeystoreManager manager) {
+		String path = manager.getFilePath();
+
+		if (path != null) {
+			put(key(path), new Session(manager, false));
+		}
+	}
+
+	/**
+	 * Get Open Session
+	 * 
+	 * @param path File Path
+	 * 
+	 * @return KeystoreManager or null if the file is not open
+	 */
+	public synchronized KeystoreManager get(String path) {
+		Session session = session(key(path));
+
+		return session == null ? null : session.manager;
+	}
+
+	/**
+	 * Close Session. Managers opened here are closed, registered managers
+	 * are only forgotten.
+	 * 
+	 * @param path File Path
+	 */
+	public void close(String path) {
+		Session session;
+
+		synchronized (this) {
+			session = managers.remove(key(path));
+		}
+
+		release(session);
+	}
+
+	/**
+	 * Close All Sessions
+	 * 
+	 */
+	public void closeAll() {
+		List<Session> closed;
+
+		synchronized (this) {
+			closed = new ArrayList<Session>(managers.values());
+			managers.clear();
+		}
+
+		for (int i = 0; i < closed.size(); i++) {
+			release(closed.get(i));
+		}
+	}
+
+	/**
+	 * Get Open File Paths
+	 * 
+	 * @return List
+	 */
+	public synchronized List<String> getPaths() {
+		List<String> paths = new ArrayList<String>(managers.keySet());
+
+		for (Iterator<String> it = paths.iterator(); it.hasNext();) {
+			if (session(it.next()) == null) {
+				it.remove();
+			}
+		}
+
+		return paths;
+	}
+
+	/**
+	 * Put Session, Replacing And Evicting Older Ones
+	 * 
+	 * @param key Session Key
+	 * @param session Session
+	 */
+	private void put(String key, Session session) {
+		List<Session> closed = new ArrayList<Session>();
+
+		synchronized (this) {
+			Session old = managers.put(key, session);
+
+			if (old != null && old.manager != session.manager) {
+				closed.add(old);
+			}
+
+			int owned = 0;
+
+			for (Iterator<Session> it = managers.values().iterator(); it
+					.hasNext();) {
+				if (it.next().owned) {
+					owned++;
+				}
+			}
+
+			// Least recently used first, unsaved changes are kept open
+			for (Iterator<Session> it = managers.values().iterator(); it
+					.hasNext()
+					&& owned > MAX_SESSIONS;) {
+				Session s = it.next();
+
+				if (s.owned && s != session && !s.manager.isUpdated()) {
+					it.remove();
+					closed.add(s);
+					owned--;
+				}
+			}
+		}
+
+		for (int i = 0; i < closed.size(); i++) {
+			release(closed.get(i));
+		}
+	}
+
+	/**
+	 * Get Session, Dropping It When Its Manager Moved On To Another File. The
+	 * manager is left open as it is still in use for the other file.
+	 * 
+	 * @param key Session Key
+	 * 
+	 * @return Session or null
+	 */
+	private Session session(String key) {
+		Session session = managers.get(key);
+
+		if (session != null
+				&& (session.manager.getFilePath() == null || !key
+						.equals(key(session.manager.getFilePath())))) {
+			managers.remove(key);
+			return null;
+		}
+
+		return session;
+	}
+
+	/**
+	 * Release Session
+	 * 
+	 * @param session Session or null
+	 */
+	private static void release(Session session) {
+		if (session != null && session.owned) {
+			session.manager.close();
+		}
+	}
+
+	/**
+	 * Session Key
+	 * 
+	 * @param path File Path
+	 * 
+	 * @return String
+	 */
+	private static String key(String path) {
+		File file = new File(path);
+
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException err) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Open Key Store
+	 * 
+	 */
+	private static class Session {
+
+		/** Key Store Manager */
+		final KeystoreManager manager;
+
+		/** Opened Here, Closed With The Session */
+		final boolean owned;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param manager
+		 * @param owned
+		 */
+		Session(KeystoreManager manager, boolean owned) {
+			this.manager = manager;
+			this.owned = owned;
+		}
+	}
+}
@@ -27,7 +27,9 @@ import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.security.KeyPair;
+import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
@@ -51,9 +53,12 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import com.jlocksmith.util.CertificateUtil;
 import com.jlocksmith.util.CustomFileFilter;
+import com.jlocksmith.util.KeyPairPool;
 import com.jlocksmith.util.KeyUtil;
 import com.jlocksmith.util.LocaleUtil;
+import com.jlocksmith.util.MonotonicSerialNumberGenerator;
 import com.jlocksmith.util.SecurityUtil;
+import com.jlocksmith.util.TrustStoreCache;
 import com.jlocksmith.util.UiUtil;
 
 /**
@@ -80,6 +85,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	/** UiUtl Util */
 	UiUtil uiUtil = new UiUtil();
 
+	/** Background Tasks */
+	private TaskExecutor tasks = TaskExecutor.getInstance();
+
 	/** Menu Bar */
 	private JMenuBar bar = new JMenuBar();
 
@@ -137,6 +145,15 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	/** Password Item */
 	private JMenuItem passwordItem = null;
 
+	/** Export Certificates Item */
+	private JMenuItem exportCertsItem = null;
+
+	/** Duplicates Item */
+	private JMenuItem duplicatesItem = null;
+
+	/** Expiring Item */
+	private JMenuItem expiringItem = null;
+
 	/** New CSR Item */
 	private JMenuItem newCsrItem = null;
 
@@ -149,6 +166,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	/** Password Item */
 	private JMenuItem newKeyPairItem = null;
 
+	/** Provision Key Pairs Item */
+	private JMenuItem provisionItem = null;
+
 	/** Rename Entry Item */
 	private JMenuItem renameEntryItem = null;
 
@@ -191,6 +211,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	/** Import Key Item */
 	private JMenuItem importKeyItem;
 
+	/** Bulk Import Item */
+	private JMenuItem bulkImportItem;
+
 	/** New Certificate Button */
 	private JMenuItem newCertificateItem;
 
@@ -203,6 +226,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	/** Prefs */
 	private static Preferences preferences = null;
 
+	/** Maximum Wait For Pending Saves On Exit */
+	private static final long SAVE_WAIT = 30000;
+
 	/**
 	 * Constructor
 	 * 
@@ -212,10 +238,20 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 
 		try {
 			preferences = new Preferences();
+			reloadCaCerts();
 		} catch (Exception err) {
 			err.printStackTrace();
 		}
 
+		startKeyPairPool();
+		startSerialNumberGenerator();
+
+		manager.addKeystoreListener(new KeystoreAdapter() {
+			public void keyStoreSaved(KeystoreEvent evt) {
+				savedAction(evt);
+			}
+		});
+
 		init();
 	}
 
@@ -276,14 +312,24 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		aboutItem = new JMenuItem(localeUtil.getString("about") + "...");
 		importCertItem = new JMenuItem(localeUtil.getString("certificate"));
 		importKeyItem = new JMenuItem(localeUtil.getString("keypair"));
+		bulkImportItem = new JMenuItem(localeUtil.getString("bulkimport")
+				+ "...");
 		exportItem = new JMenuItem(localeUtil.getString("exportentry"));
 		infoItem = new JMenuItem(localeUtil.getString("examineentry"));
 		deleteItem = new JMenuItem(localeUtil.getString("deleteentry"));
 		propItem = new JMenuItem(localeUtil.getString("examine.properties"));
+		exportCertsItem = new JMenuItem(localeUtil
+				.getString("exportcertificates")
+				+ "...");
+		duplicatesItem = new JMenuItem(localeUtil.getString("duplicates")
+				+ "...");
+		expiringItem = new JMenuItem(localeUtil.getString("expiring") + "...");
 		passwordItem = new JMenuItem(localeUtil.getString("setpassword")
 				+ "...");
 		newCertificateItem = new JMenuItem(localeUtil.getString("certificate"));
 		newKeyPairItem = new JMenuItem(localeUtil.getString("keypair"));
+		provisionItem = new JMenuItem(localeUtil.getString("provision")
+				+ "...");
 		licenseItem = new JMenuItem(localeUtil.getString("license"));
 		newCsrItem = new JMenuItem(localeUtil.getString("certificaterequest"));
 		importCsrItem = new JMenuItem(localeUtil
@@ -299,6 +345,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		deleteItem.setEnabled(false);
 		propItem.setEnabled(false);
 		passwordItem.setEnabled(false);
+		exportCertsItem.setEnabled(false);
+		duplicatesItem.setEnabled(false);
+		expiringItem.setEnabled(false);
 		newCsrItem.setEnabled(false);
 		importCsrItem.setEnabled(false);
 		copyKeyItem.setEnabled(false);
@@ -309,6 +358,7 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		saveItem.setIcon(uiUtil.getImageIcon("save.gif"));
 		importCertItem.setIcon(uiUtil.getImageIcon("certificate.gif"));
 		importKeyItem.setIcon(uiUtil.getImageIcon("keypair.gif"));
+		bulkImportItem.setIcon(uiUtil.getImageIcon("import.gif"));
 		exportItem.setIcon(uiUtil.getImageIcon("export.gif"));
 		infoItem.setIcon(uiUtil.getImageIcon("search.gif"));
 		deleteItem.setIcon(uiUtil.getImageIcon("x.gif"));
@@ -318,6 +368,7 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		printCertItem.setIcon(uiUtil.getImageIcon("preview.gif"));
 		newCertificateItem.setIcon(uiUtil.getImageIcon("newcertificate.gif"));
 		newKeyPairItem.setIcon(uiUtil.getImageIcon("newkeypair.gif"));
+		provisionItem.setIcon(uiUtil.getImageIcon("newkeypair.gif"));
 		licenseItem.setIcon(uiUtil.getImageIcon("doc.gif"));
 		newCsrItem.setIcon(uiUtil.getImageIcon("csr.gif"));
 		importCsrItem.setIcon(uiUtil.getImageIcon("csrimport.gif"));
@@ -332,14 +383,19 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		aboutItem.addActionListener(this);
 		importCertItem.addActionListener(this);
 		importKeyItem.addActionListener(this);
+		bulkImportItem.addActionListener(this);
 		exportItem.addActionListener(this);
 		infoItem.addActionListener(this);
 		deleteItem.addActionListener(this);
 		propItem.addActionListener(this);
+		exportCertsItem.addActionListener(this);
+		duplicatesItem.addActionListener(this);
+		expiringItem.addActionListener(this);
 		passwordItem.addActionListener(this);
 		printCertItem.addActionListener(this);
 		newCertificateItem.addActionListener(this);
 		newKeyPairItem.addActionListener(this);
+		provisionItem.addActionListener(this);
 		licenseItem.addActionListener(this);
 		newCsrItem.addActionListener(this);
 		importCsrItem.addActionListener(this);
@@ -359,6 +415,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		mainPanel.setDeleteItem(deleteItem);
 		mainPanel.setInfoItem(infoItem);
 		mainPanel.setPropItem(propItem);
+		mainPanel.setExportCertsItem(exportCertsItem);
+		mainPanel.setDuplicatesItem(duplicatesItem);
+		mainPanel.setExpiringItem(expiringItem);
 		mainPanel.setPasswordItem(passwordItem);
 		mainPanel.setNewCsrItem(newCsrItem);
 		mainPanel.setImportCsrItem(importCsrItem);
@@ -384,11 +443,16 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		newEntryMenu.add(newCertificateItem);
 		newEntryMenu.add(newCsrItem);
 		newEntryMenu.add(newKeyPairItem);
+		newEntryMenu.add(provisionItem);
 		importMenu.add(importCertItem);
 		importMenu.add(importCsrItem);
 		importMenu.add(importKeyItem);
+		importMenu.add(bulkImportItem);
 		keystoreMenu.add(propItem);
 		keystoreMenu.add(passwordItem);
+		keystoreMenu.add(exportCertsItem);
+		keystoreMenu.add(duplicatesItem);
+		keystoreMenu.add(expiringItem);
 		fileMenu.add(newFileItem);
 		fileMenu.add(openItem);
 		fileMenu.add(saveItem);
@@ -442,34 +506,47 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		return preferences;
 	}
 
+	/**
+	 * Reload CA Certs Key Store In Background
+	 * 
+	 */
+	private void reloadCaCerts() {
+		if (preferences.isUseCaCertsKeystore()
+				&& preferences.getCaCertsKeystorePath() != null
+				&& preferences.getCaCertsKeystorePath().length() > 0) {
+			TrustStoreCache.getInstance().reload(
+					preferences.getCaCertsKeystorePath(),
+					preferences.getCaCertsKeystorePassword());
+		} else {
+			TrustStoreCache.getInstance().clear();
+		}
+	}
+
 	/**
 	 * SSL Action
 	 * 
 	 */
 	private void sslAction() {
-		try {
-			HostPortPanel hpPanel = new HostPortPanel();
-			String host = null;
+		HostPortPanel hpPanel = new HostPortPanel();
 
-			if (UiUtil.showConfirmation(this, hpPanel, localeUtil
-					.getString("examinesslconnection"))) {
-				host = hpPanel.getHost();
-			} else {
-				return;
-			}
+		if (!UiUtil.showConfirmation(this, hpPanel, localeUtil
+				.getString("examinesslconnection"))) {
+			return;
+		}
 
-			setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
+		final String host = hpPanel.getHost();
+		final int port = hpPanel.getPort();
 
-			Certificate[] chain = CertificateUtil.getCertificationPath(host,
-					hpPanel.getPort());
-			UiUtil.showInfo(this, new CertificateChainPanel(chain,this), localeUtil
-					.getString("certificatechain"));
-		} catch (Exception err) {
-			UiUtil.showError(this, err.getMessage(), localeUtil
-					.getString("error"));
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
-		}
+		tasks.execute(new Task<Certificate[]>(this, host + ":" + port) {
+			protected Certificate[] doInBackground() throws Exception {
+				return CertificateUtil.getCertificationPath(host, port);
+			}
+
+			protected void succeeded(Certificate[] chain) {
+				UiUtil.showInfo(MainFrame.this, new CertificateChainPanel(chain,
+						MainFrame.this), localeUtil.getString("certificatechain"));
+			}
+		});
 	}
 
 	/**
@@ -496,22 +573,29 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	}
 
 	/**
-	 * New Key Pair Action
+	 * New Key Pair Action. The key pair is generated in the background.
 	 * 
 	 */
 	private void newKeyPairAction() {
-		try {
-			KeyPair keyPair = null;
-			KeyPairPanel kpPanel = new KeyPairPanel();
+		KeyPairPanel kpPanel = new KeyPairPanel();
 
-			if (UiUtil.showConfirmation(this, kpPanel, localeUtil
-					.getString("keypair"))) {
-				keyPair = KeyUtil.getKeyPair(kpPanel.getKeyAlgorithm(), kpPanel
-						.getKeySize());
-			} else {
-				return;
-			}
+		if (UiUtil.showConfirmation(this, kpPanel, localeUtil
+				.getString("keypair"))) {
+			executeKeyPair(kpPanel, new KeyPairHandler() {
+				public void generated(KeyPair keyPair) {
+					newKeyPairEntry(keyPair);
+				}
+			});
+		}
+	}
 
+	/**
+	 * New Key Pair Entry For A Generated Key Pair
+	 * 
+	 * @param keyPair Key Pair
+	 */
+	private void newKeyPairEntry(KeyPair keyPair) {
+		try {
 			Certificate cert = null;
 			CertificatePanel cpanel = new CertificatePanel(keyPair);
 
@@ -557,50 +641,114 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	}
 
 	/**
-	 * New Cert Action
+	 * Start Key Pair Pool With The Preferred Depth, Prefilled For The Default
+	 * Key Size Of Each Available Algorithm
+	 * 
+	 */
+	private void startKeyPairPool() {
+		KeyPairPool pool = KeyPairPool.getInstance();
+
+		if (preferences != null) {
+			pool.setDepth(preferences.getKeyPairPoolDepth());
+		}
+
+		String[] algs = KeyUtil.getKeyAlgorithms();
+
+		for (int i = 0; i < algs.length; i++) {
+			pool.prefill(algs[i], KeyUtil.getDefaultKeySize(algs[i]));
+		}
+	}
+
+	/**
+	 * Use The Preferred Serial Number Generator For New Certificates
+	 * 
+	 */
+	private void startSerialNumberGenerator() {
+		if (preferences == null
+				|| !Preferences.SERIAL_MONOTONIC.equals(preferences
+						.getSerialNumberMode())) {
+			return;
+		}
+
+		try {
+			CertificateUtil.setSerialNumberGenerator(new MonotonicSerialNumberGenerator(
+					preferences.getSerialNumberFile()));
+		} catch (IOException err) {
+			err.printStackTrace();
+		}
+	}
+
+	/**
+	 * Generate Key Pair In The Background. Pooled pairs are used when ready.
+	 * 
+	 * @param kpPanel Key Pair Panel
+	 * @param handler Handler Called On The Event Dispatch Thread
+	 */
+	private void executeKeyPair(KeyPairPanel kpPanel,
+			final KeyPairHandler handler) {
+		final String algorithm = kpPanel.getKeyAlgorithm();
+		final int size = kpPanel.getKeySize();
+
+		tasks.execute(new Task<KeyPair>(this, localeUtil.getString("keypair")
+				+ " " + algorithm + " " + size) {
+			protected KeyPair doInBackground() throws Exception {
+				return KeyPairPool.getInstance().take(algorithm, size);
+			}
+
+			protected void succeeded(KeyPair keyPair) {
+				handler.generated(keyPair);
+			}
+		});
+	}
+
+	/**
+	 * New Cert Action. The key pair is generated in the background.
 	 * 
 	 */
 	private void newCertAction() {
+		KeyPairPanel kpPanel = new KeyPairPanel();
+
+		if (UiUtil.showConfirmation(this, kpPanel, localeUtil
+				.getString("certificate"))) {
+			executeKeyPair(kpPanel, new KeyPairHandler() {
+				public void generated(KeyPair keyPair) {
+					newCertificateEntry(keyPair);
+				}
+			});
+		}
+	}
+
+	/**
+	 * New Certificate Entry For A Generated Key Pair
+	 * 
+	 * @param keyPair Key Pair
+	 */
+	private void newCertificateEntry(KeyPair keyPair) {
 		try {
-			KeyPairPanel kpPanel = new KeyPairPanel();
+			CertificatePanel cpanel = new CertificatePanel(keyPair);
+			JTextField aliasField = new JTextField(20);
 
-			if (UiUtil.showConfirmation(this, kpPanel, localeUtil
+			if (UiUtil.showConfirmation(this, cpanel, localeUtil
 					.getString("certificate"))) {
-				KeyPair keyPair = KeyUtil.getKeyPair(kpPanel.getKeyAlgorithm(),
-						kpPanel.getKeySize());
-
-				CertificatePanel cpanel = new CertificatePanel(keyPair);
-				JTextField aliasField = new JTextField(20);
-
-				if (UiUtil.showConfirmation(this, cpanel, localeUtil
-						.getString("certificate"))) {
-
-					if (UiUtil.showConfirmation(this, UiUtil.getAliasPanel(
-							localeUtil, aliasField), localeUtil
-							.getString("certificate"),
-							JOptionPane.QUESTION_MESSAGE)) {
-						Certificate newcert = CertificateUtil
-								.generateCertificate(cpanel.getCommonName(),
-										cpanel.getOrganizationUnit(), cpanel
-												.getOrganizationName(), cpanel
-												.getLocality(), cpanel
-												.getState(), cpanel
-												.getCountry(), cpanel
-												.getEmail(),
-										Integer.parseInt(cpanel.getValidity()),
-										keyPair, cpanel.getSigAlg());
-
-						manager.setCertificateEntry(aliasField.getText(),
-								newcert);
-					}
+
+				if (UiUtil.showConfirmation(this, UiUtil.getAliasPanel(
+						localeUtil, aliasField), localeUtil
+						.getString("certificate"),
+						JOptionPane.QUESTION_MESSAGE)) {
+					Certificate newcert = CertificateUtil.generateCertificate(
+							cpanel.getCommonName(), cpanel.getOrganizationUnit(),
+							cpanel.getOrganizationName(), cpanel.getLocality(),
+							cpanel.getState(), cpanel.getCountry(), cpanel
+									.getEmail(), Integer.parseInt(cpanel
+									.getValidity()), keyPair, cpanel.getSigAlg());
+
+					manager.setCertificateEntry(aliasField.getText(), newcert);
 				}
 			}
 		} catch (Exception err) {
 			UiUtil.showError(this, err.getMessage(), localeUtil
 					.getString("error"));
 			err.printStackTrace();
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
 		}
 	}
 
@@ -659,63 +807,70 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	}
 
 	/**
-	 * Open Action
+	 * Open Action. The key store is read and decrypted in the background.
 	 * 
 	 */
 	private void openAction() {
-		try {
-			File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
-					new CustomFileFilter(securityUtil.getFileKeystoreMap(), localeUtil.getString("keystore")));
+		final File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
+				new CustomFileFilter(securityUtil.getFileKeystoreMap(), localeUtil.getString("keystore")));
 
-			if (file == null) {
-				return;
-			}
+		if (file == null) {
+			return;
+		}
 
-			String fileExt = null;
-			String ksType = null;
+		String fileExt = null;
+		String ksType = null;
 
-			if (file.getName().lastIndexOf('.') != -1) {
-				fileExt = file.getName().substring(
-						file.getName().lastIndexOf('.'),
-						file.getName().length());
+		if (file.getName().lastIndexOf('.') != -1) {
+			fileExt = file.getName().substring(file.getName().lastIndexOf('.'),
+					file.getName().length());
 
-				if (securityUtil.getFileKeystoreMap().get(fileExt) != null) {
-					ksType = securityUtil.getFileKeystoreMap().get(fileExt)
-							.toString();
-				}
+			if (securityUtil.getFileKeystoreMap().get(fileExt) != null) {
+				ksType = securityUtil.getFileKeystoreMap().get(fileExt)
+						.toString();
 			}
+		}
 
-			if (ksType == null) {
-				ksType = UiUtil.showValues(this, localeUtil.getString("type"),
-						localeUtil.getString("keystore"), securityUtil
-								.getStoreTypes());
-			}
+		if (ksType == null) {
+			ksType = UiUtil.showValues(this, localeUtil.getString("type"),
+					localeUtil.getString("keystore"), securityUtil
+							.getStoreTypes());
+		}
 
-			if (ksType != null) {
-				String password = UiUtil.getPassword(this, localeUtil
-						.getString("password"), localeUtil
-						.getString("keystore"));
+		if (ksType == null) {
+			return;
+		}
 
-				if (password != null) {
-					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					manager.loadKeyStore(file.getPath(), password, ksType,
-							securityUtil.getKeystoreProviderName(ksType));
-					setTitle(localeUtil.getString("jlocksmith") + " - "
-							+ file.getName());
-					saveItem.setEnabled(true);
-					saveButton.setEnabled(true);
-					saveAsItem.setEnabled(true);
-					newEntryMenu.setEnabled(true);
-					importMenu.setEnabled(true);
-				}
-			}
-		} catch (Exception err) {
-			UiUtil.showError(this, err.getMessage(), localeUtil
-					.getString("error"));
-			err.printStackTrace();
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
+		final String type = ksType;
+		final String password = UiUtil.getPassword(this, localeUtil
+				.getString("password"), localeUtil.getString("keystore"));
+
+		if (password == null) {
+			return;
 		}
+
+		tasks.execute(new Task<KeyStore>(this, localeUtil.getString("open")
+				+ " " + file.getName()) {
+			protected KeyStore doInBackground() throws Exception {
+				KeyStore ks = KeyStore.getInstance(type, securityUtil
+						.getKeystoreProviderName(type));
+				KeyUtil.loadKeyStore(ks, file.getPath(), password);
+
+				return ks;
+			}
+
+			protected void succeeded(KeyStore ks) {
+				manager.setKeyStore(ks, file.getPath(), password);
+				KeystoreSessions.getInstance().register(manager);
+				setTitle(localeUtil.getString("jlocksmith") + " - "
+						+ file.getName());
+				saveItem.setEnabled(true);
+				saveButton.setEnabled(true);
+				saveAsItem.setEnabled(true);
+				newEntryMenu.setEnabled(true);
+				importMenu.setEnabled(true);
+			}
+		});
 	}
 
 	/**
@@ -734,6 +889,9 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 
 				// Save
 				preferences.save();
+
+				// Refresh cached CA certs
+				reloadCaCerts();
 			} else {
 				return;
 			}
@@ -773,15 +931,43 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 	 * 
 	 */
 	private void saveAction() {
-		try {
-			setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-			manager.storeKeyStore(manager.getFilePath(), manager
-					.getKeystorePassword());
-		} catch (Exception err) {
-			UiUtil.showError(this, err.getMessage(), localeUtil
+		save(manager.getFilePath(), manager.getKeystorePassword());
+	}
+
+	/**
+	 * Save In The Background And Show It In The Status Panel. The outcome is
+	 * reported by the saved event.
+	 * 
+	 * @param path File Path
+	 * @param password Key Store Password
+	 */
+	private void save(final String path, final String password) {
+		Task<Object> task = new Task<Object>(this, localeUtil.getString("save")
+				+ " " + new File(path).getName()) {
+			protected Object doInBackground() throws Exception {
+				return manager.saveKeyStore(path, password).get();
+			}
+		};
+
+		task.setCancellable(false);
+		tasks.execute(task);
+	}
+
+	/**
+	 * Saved Action
+	 * 
+	 * @param evt Keystore Event
+	 */
+	private void savedAction(KeystoreEvent evt) {
+		if (evt.getError() != null) {
+			UiUtil.showError(this, evt.getError().getMessage(), localeUtil
 					.getString("error"));
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
+		} else {
+			KeystoreSessions.getInstance().register(manager);
+			saveItem.setEnabled(true);
+			saveButton.setEnabled(true);
+			setTitle(localeUtil.getString("jlocksmith") + " - "
+					+ new File(evt.getPath()).getName());
 		}
 	}
 
@@ -811,28 +997,39 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 
 				// Not cancelled
 				if (password != null) {
-					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					manager.storeKeyStore(file.getPath(), password);
-					saveItem.setEnabled(true);
-					saveButton.setEnabled(true);
-					setTitle(localeUtil.getString("jlocksmith") + " - "
-							+ file.getName());
+					save(file.getPath(), password);
 				}
 			}
 		} catch (Exception err) {
 			UiUtil.showError(this, err.getMessage(), localeUtil
 					.getString("error"));
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
 		}
 	}
 
 	/**
-	 * Exit Action
+	 * Exit Action. Pending saves are waited for in the background, if one
+	 * has not finished in time the user is asked before exiting.
 	 * 
 	 */
 	private void exitAction() {
-		System.exit(0);
+		Task<Boolean> task = new Task<Boolean>(this, localeUtil
+				.getString("exit")) {
+			protected Boolean doInBackground() throws Exception {
+				return Boolean.valueOf(manager.awaitSaves(SAVE_WAIT));
+			}
+
+			protected void succeeded(Boolean saved) {
+				if (saved.booleanValue()
+						|| UiUtil.showConfirmation(MainFrame.this, localeUtil
+								.getString("warning.savepending"), localeUtil
+								.getString("warning"))) {
+					System.exit(0);
+				}
+			}
+		};
+
+		task.setCancellable(false);
+		tasks.execute(task);
 	}
 
 	/**
@@ -922,6 +1119,12 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 			openAction();
 		} else if (e.getSource() == passwordItem) {
 			passwordAction();
+		} else if (e.getSource() == exportCertsItem) {
+			mainPanel.exportCertificatesAction();
+		} else if (e.getSource() == duplicatesItem) {
+			mainPanel.duplicatesAction();
+		} else if (e.getSource() == expiringItem) {
+			mainPanel.expiringAction();
 		} else if (e.getSource() == propItem) {
 			mainPanel.propAction();
 		} else if (e.getSource() == deleteButton || e.getSource() == deleteItem) {
@@ -934,10 +1137,14 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 			mainPanel.importCertAction();
 		} else if (e.getSource() == importKeyItem) {
 			mainPanel.importKeyAction();
+		} else if (e.getSource() == bulkImportItem) {
+			mainPanel.bulkImportAction();
 		} else if (e.getSource() == newCertificateItem) {
 			newCertAction();
 		} else if (e.getSource() == newKeyPairItem) {
 			newKeyPairAction();
+		} else if (e.getSource() == provisionItem) {
+			mainPanel.provisionAction();
 		} else if (e.getSource() == licenseItem) {
 			licenseAction();
 		} else if (e.getSource() == newCsrItem) {
@@ -978,4 +1185,17 @@ public class MainFrame extends JFrame implements WindowListener, ActionListener
 		MainFrame main = new MainFrame();
 	}
 
+	/**
+	 * Handler Of A Key Pair Generated In The Background
+	 * 
+	 */
+	private interface KeyPairHandler {
+
+		/**
+		 * Key Pair Generated, Called On The Event Dispatch Thread
+		 * 
+		 * @param keyPair Key Pair
+		 */
+		public void generated(KeyPair keyPair);
+	}
 }
@@ -38,6 +38,12 @@ import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -47,8 +53,10 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingWorker;
 import javax.swing.border.TitledBorder;
 
 import com.jlocksmith.util.CertificateUtil;
@@ -56,6 +64,8 @@ import com.jlocksmith.util.CustomFileFilter;
 import com.jlocksmith.util.KeyUtil;
 import com.jlocksmith.util.LocaleUtil;
 import com.jlocksmith.util.SecurityUtil;
+import com.jlocksmith.util.TrustIndex;
+import com.jlocksmith.util.TrustStoreCache;
 import com.jlocksmith.util.UiUtil;
 
 /**
@@ -88,6 +98,9 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	/** Status Panel */
 	private JPanel statusPanel = new JPanel();
 
+	/** Background Tasks */
+	private TaskExecutor tasks = TaskExecutor.getInstance();
+
 	/** Delete Button */
 	private JButton deleteButton = new JButton();
 
@@ -121,6 +134,15 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	/** Password Item */
 	private JMenuItem passwordItem = null;
 
+	/** Export Certificates Item */
+	private JMenuItem exportCertsItem = null;
+
+	/** Duplicates Item */
+	private JMenuItem duplicatesItem = null;
+
+	/** Expiring Item */
+	private JMenuItem expiringItem = null;
+
 	/** New CSR Item */
 	private JMenuItem newCsrItem = null;
 
@@ -158,6 +180,9 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	/** Security Util */
 	private SecurityUtil securityUtil = SecurityUtil.getInstance();
 
+	/** Trust Index Of Key Store, Rebuilt After Changes */
+	private TrustIndex trustIndex = null;
+
 	/**
 	 * Constructor
 	 * 
@@ -215,6 +240,7 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		// Status Panel
 		statusPanel.setLayout(new FlowLayout(FlowLayout.LEFT, 5, 5));
 		statusPanel.add(statusLabel);
+		statusPanel.add(new TaskPanel(tasks));
 
 		// Add Panels
 		add(BorderLayout.NORTH, storePanel);
@@ -247,20 +273,24 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	private X509Certificate[] establishTrust(X509Certificate cert)
 			throws KeyStoreException, CertificateException, IOException,
 			NoSuchAlgorithmException {
-		KeyStore[] stores = null;
+		TrustIndex[] indexes = null;
+
+		if (trustIndex == null) {
+			trustIndex = new TrustIndex(new KeyStore[] { manager.getKeyStore() });
+		}
 
 		if (MainFrame.getPreferences().isUseCaCertsKeystore()) {
-			stores = new KeyStore[2];
-			stores[0] = manager.getKeyStore();
-			stores[1] = KeyUtil.loadKeyStore(MainFrame.getPreferences()
-					.getCaCertsKeystorePath(), MainFrame.getPreferences()
-					.getCaCertsKeystorePassword());
+			indexes = new TrustIndex[2];
+			indexes[0] = trustIndex;
+			indexes[1] = TrustStoreCache.getInstance().getTrustIndex(
+					MainFrame.getPreferences().getCaCertsKeystorePath(),
+					MainFrame.getPreferences().getCaCertsKeystorePassword());
 		} else {
-			stores = new KeyStore[1];
-			stores[0] = manager.getKeyStore();
+			indexes = new TrustIndex[1];
+			indexes[0] = trustIndex;
 		}
 
-		return CertificateUtil.establishTrust(stores, cert);
+		return CertificateUtil.establishTrust(indexes, cert);
 	}
 
 	/**
@@ -492,6 +522,180 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		}
 	}
 
+	/**
+	 * Expiring Action. Lists the certificates expiring within a number of
+	 * days, earliest first.
+	 * 
+	 */
+	public void expiringAction() {
+		String value = UiUtil.getValue(parent, localeUtil.getString("days"),
+				localeUtil.getString("expiring"));
+
+		if (value == null) {
+			return;
+		}
+
+		int days;
+
+		try {
+			days = Integer.parseInt(value.trim());
+		} catch (NumberFormatException err) {
+			UiUtil.showError(parent, localeUtil.getString("error.integer"),
+					localeUtil.getString("error"));
+			return;
+		}
+
+		List<ExpiryIndex.Entry> entries = manager.getExpiryIndex()
+				.getExpiringWithin(days);
+		DateFormat format = DateFormat.getDateTimeInstance();
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < entries.size(); i++) {
+			ExpiryIndex.Entry entry = entries.get(i);
+			sb.append(format.format(entry.getNotAfter())).append('\t');
+			sb.append(entry.getAlias());
+
+			if (entry.getPosition() > 0) {
+				sb.append('[').append(entry.getPosition()).append(']');
+			}
+
+			sb.append('\t').append(entry.getSubject()).append('\n');
+		}
+
+		JTextArea text = new JTextArea(sb.length() == 0 ? MessageFormat.format(
+				localeUtil.getString("expiring.none"), new Object[] { ""
+						+ days }) : sb.toString(), 16, 60);
+		text.setEditable(false);
+
+		UiUtil.showInfo(parent, new JScrollPane(text), localeUtil
+				.getString("expiring"));
+	}
+
+	/**
+	 * Duplicates Action. Lists certificates stored under more than one alias
+	 * and, when the CA certs key store is used, certificates it already holds.
+	 * 
+	 */
+	public void duplicatesAction() {
+		setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
+
+		new SwingWorker<String, Object>() {
+			protected String doInBackground() throws Exception {
+				FingerprintIndex index = manager.syncFingerprintIndex();
+
+				StringBuilder sb = new StringBuilder();
+				appendGroups(sb, localeUtil.getString("duplicates.keystore"),
+						index.getDuplicates());
+
+				if (MainFrame.getPreferences().isUseCaCertsKeystore()) {
+					appendGroups(sb, localeUtil.getString("duplicates.cacerts"),
+							index.findAll(TrustStoreCache.getInstance()
+									.getCertificates(
+											MainFrame.getPreferences()
+													.getCaCertsKeystorePath(),
+											MainFrame.getPreferences()
+													.getCaCertsKeystorePassword())));
+				}
+
+				return sb.length() == 0 ? localeUtil
+						.getString("duplicates.none") : sb.toString();
+			}
+
+			protected void done() {
+				setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
+
+				try {
+					JTextArea text = new JTextArea(get(), 16, 60);
+					text.setEditable(false);
+
+					UiUtil.showInfo(parent, new JScrollPane(text), localeUtil
+							.getString("duplicates"));
+				} catch (ExecutionException err) {
+					UiUtil.showError(parent, err.getCause().getMessage(),
+							localeUtil.getString("error"));
+				} catch (InterruptedException err) {
+					err.printStackTrace();
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Append Fingerprint Groups
+	 * 
+	 * @param sb String Builder
+	 * @param title Title
+	 * @param groups Aliases By Fingerprint
+	 */
+	private static void appendGroups(StringBuilder sb, String title,
+			Map<String, List<String>> groups) {
+		if (groups.isEmpty()) {
+			return;
+		}
+
+		sb.append(title).append('\n');
+
+		for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+			sb.append(entry.getValue()).append(' ').append(entry.getKey())
+					.append('\n');
+		}
+
+		sb.append('\n');
+	}
+
+	/**
+	 * Export Certificates Action. Writes all certificates to a PEM bundle, a
+	 * directory or a ZIP archive in the background.
+	 * 
+	 */
+	public void exportCertificatesAction() {
+		String[] formats = { localeUtil.getString("exportcertificates.bundle"),
+				localeUtil.getString("exportcertificates.directory"),
+				localeUtil.getString("exportcertificates.zip") };
+		String value = UiUtil.showValues(parent, localeUtil
+				.getString("format"), localeUtil
+				.getString("exportcertificates"), formats);
+
+		if (value == null) {
+			return;
+		}
+
+		final int format = Arrays.asList(formats).indexOf(value);
+		final File file = UiUtil.getSelectedFile(parent,
+				JFileChooser.SAVE_DIALOG, null,
+				format == PemExporter.DIRECTORY ? JFileChooser.DIRECTORIES_ONLY
+						: JFileChooser.FILES_ONLY);
+
+		if (file == null) {
+			return;
+		}
+
+		setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
+
+		new SwingWorker<Integer, Object>() {
+			protected Integer doInBackground() throws Exception {
+				return Integer.valueOf(new PemExporter(manager).exportAll(file,
+						format));
+			}
+
+			protected void done() {
+				setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
+
+				try {
+					UiUtil.showInfo(parent, MessageFormat.format(localeUtil
+							.getString("exportcertificates.done"),
+							new Object[] { get().toString() }), localeUtil
+							.getString("exportcertificates"));
+				} catch (ExecutionException err) {
+					UiUtil.showError(parent, err.getCause().getMessage(),
+							localeUtil.getString("error"));
+				} catch (InterruptedException err) {
+					err.printStackTrace();
+				}
+			}
+		}.execute();
+	}
+
 	/**
 	 * Export Certificate
 	 * 
@@ -516,86 +720,122 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	}
 
 	/**
-	 * Export Key Pair
+	 * Export Key Pair. The target key store is opened and written in the
+	 * background.
 	 * 
-	 * @param row
+	 * @param alias Alias
 	 */
-	private void exportKeyPair(String alias) {
-		try {
-			File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
-					new CustomFileFilter(securityUtil.getFileKeystoreMap(),
-							localeUtil.getString("keystore")));
+	private void exportKeyPair(final String alias) {
+		final File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
+				new CustomFileFilter(securityUtil.getFileKeystoreMap(),
+						localeUtil.getString("keystore")));
 
-			if (file == null) {
-				return;
-			}
+		if (file == null) {
+			return;
+		}
 
-			String fileExt = null;
-			String ksType = null;
+		final String kspassword = getKeystorePassword();
 
-			if (file.getName().lastIndexOf('.') != -1) {
-				fileExt = file.getName().substring(
-						file.getName().lastIndexOf('.'),
-						file.getName().length());
+		if (kspassword == null) {
+			return;
+		}
 
-				if (securityUtil.getFileKeystoreMap().get(fileExt) != null) {
-					ksType = securityUtil.getFileKeystoreMap().get(fileExt)
-							.toString();
-				}
-			}
+		openKeyStore(file, kspassword, new SessionHandler() {
+			public void opened(final KeystoreManager target) {
+				JTextField aliasField = new JTextField(20);
 
-			if (ksType == null) {
-				ksType = UiUtil.showValues(this, localeUtil.getString("type"),
-						localeUtil.getString("keystore"), securityUtil
-								.getStoreTypes());
-			}
+				if (!UiUtil.showConfirmation(MainPanel.this, UiUtil
+						.getAliasPanel(localeUtil, aliasField), localeUtil
+						.getString("keypair"), JOptionPane.QUESTION_MESSAGE)) {
+					return;
+				}
 
-			if (ksType != null) {
-				String kspassword = UiUtil.getPassword(this, localeUtil
-						.getString("password"), localeUtil
-						.getString("keystore"));
+				final String newAlias = aliasField.getText();
+				final String kppassword = UiUtil.getPassword(MainPanel.this,
+						localeUtil.getString("password"), localeUtil
+								.getString("key"));
 
-				if (kspassword != null) {
-					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					KeyStore ks = KeyUtil.loadKeyStore(file.getPath(),
-							kspassword, ksType, securityUtil
-									.getKeystoreProviderName(ksType));
-
-					String newAlias = null;
-					JTextField aliasField = new JTextField(20);
-
-					if (UiUtil
-							.showConfirmation(this, UiUtil.getAliasPanel(
-									localeUtil, aliasField), localeUtil
-									.getString("keypair"),
-									JOptionPane.QUESTION_MESSAGE)) {
-						newAlias = aliasField.getText();
-					}
+				if (kppassword == null) {
+					return;
+				}
 
-					if (newAlias != null) {
-						String kppassword = UiUtil.getPassword(this, localeUtil
-								.getString("password"), localeUtil
-								.getString("key"));
+				Task<Object> task = new Task<Object>(MainPanel.this, localeUtil
+						.getString("exportentry") + " " + alias) {
+					protected Object doInBackground() throws Exception {
+						manager.copyKeyEntry(alias, kppassword, target,
+								newAlias, kppassword);
 
-						if (kppassword != null) {
-							PrivateKey key = (PrivateKey) manager.getKey(
-									alias, kppassword);
-							Certificate[] chain = manager
-									.getCertificateChain(alias);
-							ks.setKeyEntry(newAlias, key, kppassword
-									.toCharArray(), chain);
-							KeyUtil.storeKeyStore(ks, file.getPath(), kspassword);
+						// Open store is saved by the user
+						if (target != manager) {
+							target.storeKeyStore(file.getPath(), kspassword);
 						}
+
+						return null;
 					}
-				}
+				};
+
+				task.setCancellable(false);
+				tasks.execute(task);
+			}
+		});
+	}
+
+	/**
+	 * Get Key Store Password
+	 * 
+	 * @return String or null if cancelled
+	 */
+	private String getKeystorePassword() {
+		return UiUtil.getPassword(this, localeUtil.getString("password"),
+				localeUtil.getString("keystore"));
+	}
+
+	/**
+	 * Open Key Store Session In The Background. The key store type is taken
+	 * from the file extension or asked for.
+	 * 
+	 * @param file Key Store File
+	 * @param password Key Store Password
+	 * @param handler Handler Called On The Event Dispatch Thread
+	 */
+	private void openKeyStore(final File file, final String password,
+			final SessionHandler handler) {
+		String ksType = null;
+
+		if (file.getName().lastIndexOf('.') != -1) {
+			String fileExt = file.getName().substring(
+					file.getName().lastIndexOf('.'), file.getName().length());
+
+			if (securityUtil.getFileKeystoreMap().get(fileExt) != null) {
+				ksType = securityUtil.getFileKeystoreMap().get(fileExt)
+						.toString();
 			}
-		} catch (Exception err) {
-			UiUtil.showError(this, err.getMessage(), localeUtil
-					.getString("error"));
-			err.printStackTrace();
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
 		}
+
+		if (ksType == null) {
+			ksType = UiUtil.showValues(this, localeUtil.getString("type"),
+					localeUtil.getString("keystore"), securityUtil
+							.getStoreTypes());
+		}
+
+		if (ksType == null) {
+			return;
+		}
+
+		final String type = ksType;
+
+		tasks.execute(new Task<KeystoreManager>(this, localeUtil
+				.getString("open")
+				+ " " + file.getName()) {
+			protected KeystoreManager doInBackground() throws Exception {
+				return KeystoreSessions.getInstance().open(file.getPath(),
+						password, type, securityUtil.getKeystoreProviderName(type));
+			}
+
+			protected void succeeded(KeystoreManager session) {
+				handler.opened(session);
+			}
+		});
 	}
 
 	/**
@@ -618,18 +858,28 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 									.getCertificateChain(alias));
 
 					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					X509Certificate[] replyCerts = CertificateUtil
-							.orderX509CertChain(CertificateUtil
+					X509Certificate[][] replyChains = CertificateUtil
+							.orderX509CertChains(CertificateUtil
 									.readX509Certificates(file.getPath()));
 					setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
 
-					if ((replyCerts == null) || (replyCerts.length == 0)) {
+					if (replyChains.length == 0) {
 						return;
 					}
 
+					X509Certificate[] replyCerts = null;
+
+					// Pick longest chain for the entry public key
+					for (int i = 0; i < replyChains.length; i++) {
+						if (oldCerts[0].getPublicKey().equals(
+								replyChains[i][0].getPublicKey())
+								&& (replyCerts == null || replyChains[i].length > replyCerts.length)) {
+							replyCerts = replyChains[i];
+						}
+					}
+
 					// Check public keys
-					if (!oldCerts[0].getPublicKey().equals(
-							replyCerts[0].getPublicKey())) {
+					if (replyCerts == null) {
 						throw new Exception(localeUtil
 								.getString("error.publickeymatch"));
 					}
@@ -669,24 +919,51 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	}
 
 	/**
-	 * Import Cert Action
+	 * Import Cert Action. The certificate is read and looked up in the
+	 * fingerprint index in the background, the warnings are shown after.
 	 * 
 	 */
 	public void importCertAction() {
-		File file = UiUtil.getSelectedFile(parent, JFileChooser.OPEN_DIALOG,
-				new CustomFileFilter(".cer", localeUtil
-						.getString("certificate")));
+		final File file = UiUtil.getSelectedFile(parent,
+				JFileChooser.OPEN_DIALOG, new CustomFileFilter(".cer",
+						localeUtil.getString("certificate")));
 
-		if (file != null) {
-			String alias = UiUtil.getPassword(parent, localeUtil
-					.getString("new.alias"), localeUtil
-					.getString("certificate"));
+		if (file == null) {
+			return;
+		}
 
-			if (alias != null) {
+		final String alias = UiUtil.getPassword(parent, localeUtil
+				.getString("new.alias"), localeUtil.getString("certificate"));
+
+		if (alias == null) {
+			return;
+		}
+
+		tasks.execute(new Task<X509Certificate>(parent, localeUtil
+				.getString("certificate")
+				+ " " + file.getName()) {
+			private List<String> duplicates;
+
+			protected X509Certificate doInBackground() throws Exception {
+				X509Certificate cert = CertificateUtil.readX509Certificate(file
+						.getPath());
+				duplicates = manager.findDuplicates(cert);
+
+				return cert;
+			}
+
+			protected void succeeded(X509Certificate cert) {
 				try {
-					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					X509Certificate cert = CertificateUtil
-							.readX509Certificate(file.getPath());
+					if (!duplicates.isEmpty()
+							&& !UiUtil.showConfirmation(parent, MessageFormat
+									.format(localeUtil
+											.getString("warning.duplicate"),
+											new Object[] { duplicates
+													.toString() }),
+									localeUtil.getString("warning"))) {
+						return;
+					}
+
 					if (establishTrust(cert) != null) {
 						manager.setCertificateEntry(alias, cert);
 					} else {
@@ -699,83 +976,312 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 				} catch (Exception err) {
 					UiUtil.showError(parent, err.getMessage(), localeUtil
 							.getString("error"));
-				} finally {
-					setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
 				}
 			}
+		});
+	}
+
+	/**
+	 * Bulk Import Action. Imports the certificates of a directory tree or
+	 * archive in the background and shows a summary when done.
+	 * 
+	 */
+	public void bulkImportAction() {
+		final File file = UiUtil.getSelectedFile(parent,
+				JFileChooser.OPEN_DIALOG, null,
+				JFileChooser.FILES_AND_DIRECTORIES);
+
+		if (file == null) {
+			return;
 		}
+
+		String template = UiUtil.getValue(parent, localeUtil
+				.getString("bulkimport.template"), localeUtil
+				.getString("bulkimport"));
+
+		if (template == null) {
+			return;
+		}
+
+		final BulkImporter importer = new BulkImporter(manager);
+
+		if (template.trim().length() > 0) {
+			importer.setTemplate(template.trim());
+		}
+
+		setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
+
+		new SwingWorker<BulkImporter.Result, Object>() {
+			protected BulkImporter.Result doInBackground() throws Exception {
+				if (MainFrame.getPreferences().isUseCaCertsKeystore()) {
+					importer.setTrustIndexes(new TrustIndex[] { TrustStoreCache
+							.getInstance().getTrustIndex(
+									MainFrame.getPreferences()
+											.getCaCertsKeystorePath(),
+									MainFrame.getPreferences()
+											.getCaCertsKeystorePassword()) });
+				}
+
+				return importer.importCertificates(file);
+			}
+
+			protected void done() {
+				setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
+
+				try {
+					showImportSummary(get());
+				} catch (ExecutionException err) {
+					UiUtil.showError(parent, err.getCause().getMessage(),
+							localeUtil.getString("error"));
+				} catch (InterruptedException err) {
+					err.printStackTrace();
+				}
+			}
+		}.execute();
 	}
 
 	/**
-	 * Import Key Action
+	 * Provision Action. Creates key pair entries with self-signed certificates
+	 * from one template for a number of entries or the names of a CSV file.
 	 * 
 	 */
-	public void importKeyAction() {
+	public void provisionAction() {
+		KeyPairPanel kpPanel = new KeyPairPanel();
+
+		if (!UiUtil.showConfirmation(parent, kpPanel, localeUtil
+				.getString("provision"))) {
+			return;
+		}
+
+		CertificatePanel cpanel = new CertificatePanel(kpPanel
+				.getKeyAlgorithm());
+		cpanel.setCommonName("{name}");
+
+		if (!UiUtil.showConfirmation(parent, cpanel, localeUtil
+				.getString("provision"))) {
+			return;
+		}
+
+		String count = UiUtil.getValue(parent, localeUtil
+				.getString("provision.names"), localeUtil
+				.getString("provision"));
+
+		if (count == null) {
+			return;
+		}
+
+		List<String> names = null;
+		int number;
+		int validity;
+
 		try {
-			File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
-					new CustomFileFilter(securityUtil.getFileKeystoreMap(),
-							localeUtil.getString("keystore")));
+			validity = Integer.parseInt(cpanel.getValidity().trim());
+
+			if (count.trim().length() > 0) {
+				number = Integer.parseInt(count.trim());
+			} else {
+				File file = UiUtil.getSelectedFile(parent,
+						JFileChooser.OPEN_DIALOG, new CustomFileFilter(".csv",
+								"CSV"));
+
+				if (file == null) {
+					return;
+				}
 
-			if (file == null) {
+				names = KeyPairProvisioner.readNames(file);
+				number = names.size();
+			}
+
+			if (number < 1) {
+				UiUtil.showError(parent, localeUtil.getString("error.count"),
+						localeUtil.getString("error"));
 				return;
 			}
+		} catch (Exception err) {
+			err.printStackTrace();
+			UiUtil.showError(parent, err.getMessage(), localeUtil
+					.getString("error"));
+			return;
+		}
 
-			String fileExt = null;
-			String ksType = null;
+		String template = UiUtil.getValue(parent, localeUtil
+				.getString("provision.template"), localeUtil
+				.getString("provision"));
+
+		if (template == null) {
+			return;
+		}
 
-			if (file.getName().lastIndexOf('.') != -1) {
-				fileExt = file.getName().substring(
-						file.getName().lastIndexOf('.'),
-						file.getName().length());
+		final String password = UiUtil.getPassword(parent, localeUtil
+				.getString("new.password"), localeUtil.getString("keypair"));
 
-				if (securityUtil.getFileKeystoreMap().get(fileExt) != null) {
-					ksType = securityUtil.getFileKeystoreMap().get(fileExt)
-							.toString();
+		if (password == null) {
+			return;
+		}
+
+		final KeyPairProvisioner provisioner = new KeyPairProvisioner(manager);
+		provisioner.setKeyPair(kpPanel.getKeyAlgorithm(), kpPanel.getKeySize());
+		provisioner.setSignatureAlgorithm(cpanel.getSigAlg());
+		provisioner.setValidity(validity);
+		provisioner.setAttribute("CN", cpanel.getCommonName());
+		provisioner.setAttribute("OU", cpanel.getOrganizationUnit());
+		provisioner.setAttribute("O", cpanel.getOrganizationName());
+		provisioner.setAttribute("L", cpanel.getLocality());
+		provisioner.setAttribute("ST", cpanel.getState());
+		provisioner.setAttribute("C", cpanel.getCountry());
+		provisioner.setAttribute("E", cpanel.getEmail());
+
+		if (template.trim().length() > 0) {
+			provisioner.setTemplate(template.trim());
+		}
+
+		final List<String> provisionNames = names;
+		final int provisionCount = number;
+
+		tasks.execute(new Task<KeyPairProvisioner.Result>(parent, localeUtil
+				.getString("provision")
+				+ " " + provisionCount) {
+			protected KeyPairProvisioner.Result doInBackground()
+					throws Exception {
+				provisioner.setListener(new KeyPairProvisioner.Listener() {
+					public void provisioned(int done, int total) {
+						setProgress(done, total);
+					}
+				});
+
+				if (provisionNames == null) {
+					return provisioner.provision(provisionCount, password);
 				}
+
+				return provisioner.provision(provisionNames, password);
 			}
 
-			if (ksType == null) {
-				ksType = UiUtil.showValues(this, localeUtil.getString("type"),
-						localeUtil.getString("keystore"), securityUtil
-								.getStoreTypes());
+			protected void succeeded(KeyPairProvisioner.Result result) {
+				StringBuilder sb = new StringBuilder();
+				sb.append(MessageFormat.format(localeUtil
+						.getString("provision.summary"), new Object[] {
+						"" + result.getCreated().size(),
+						"" + result.getFailures().size() }));
+				appendLines(sb, localeUtil.getString("bulkimport.failures"),
+						result.getFailures());
+
+				JTextArea text = new JTextArea(sb.toString(), 16, 60);
+				text.setEditable(false);
+
+				UiUtil.showInfo(parent, new JScrollPane(text), localeUtil
+						.getString("provision"));
 			}
+		});
+	}
 
-			if (ksType != null) {
-				String password = UiUtil.getPassword(this, localeUtil
-						.getString("password"), localeUtil
-						.getString("keystore"));
+	/**
+	 * Show Bulk Import Summary
+	 * 
+	 * @param result Import Result
+	 */
+	private void showImportSummary(BulkImporter.Result result) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(MessageFormat.format(localeUtil
+				.getString("bulkimport.summary"), new Object[] {
+				"" + result.getImported().size(), "" + result.getFiles(),
+				"" + result.getDuplicates().size(),
+				"" + result.getUntrusted().size(),
+				"" + result.getFailures().size() }));
+		appendLines(sb, localeUtil.getString("bulkimport.failures"), result
+				.getFailures());
+		appendLines(sb, localeUtil.getString("bulkimport.untrusted"), result
+				.getUntrusted());
+		appendLines(sb, localeUtil.getString("bulkimport.duplicates"), result
+				.getDuplicates());
+
+		JTextArea text = new JTextArea(sb.toString(), 16, 60);
+		text.setEditable(false);
+
+		UiUtil.showInfo(parent, new JScrollPane(text), localeUtil
+				.getString("bulkimport"));
+	}
 
-				if (password != null) {
-					setCursor(new Cursor(java.awt.Cursor.WAIT_CURSOR));
-					KeyStore ks = KeyUtil.loadKeyStore(file.getPath(),
-							password, ksType, securityUtil
-									.getKeystoreProviderName(ksType));
-
-					String alias = UiUtil.showValues(this, localeUtil
-							.getString("alias"), localeUtil
-							.getString("keypair"), KeyUtil
-							.getKeyPairAliases(ks));
-
-					if (alias != null) {
-						password = UiUtil.getPassword(this, localeUtil
-								.getString("new.password"), localeUtil
+	/**
+	 * Append Titled Lines
+	 * 
+	 * @param sb String Builder
+	 * @param title Title
+	 * @param lines Lines
+	 */
+	private static void appendLines(StringBuilder sb, String title,
+			List<String> lines) {
+		if (lines.isEmpty()) {
+			return;
+		}
+
+		sb.append("\n\n").append(title).append('\n');
+
+		for (int i = 0; i < lines.size(); i++) {
+			sb.append(lines.get(i)).append('\n');
+		}
+	}
+
+	/**
+	 * Import Key Action. The source key store is opened and the key copied in
+	 * the background.
+	 * 
+	 */
+	public void importKeyAction() {
+		File file = UiUtil.getSelectedFile(this, JFileChooser.OPEN_DIALOG,
+				new CustomFileFilter(securityUtil.getFileKeystoreMap(),
+						localeUtil.getString("keystore")));
+
+		if (file == null) {
+			return;
+		}
+
+		String password = getKeystorePassword();
+
+		if (password == null) {
+			return;
+		}
+
+		openKeyStore(file, password, new SessionHandler() {
+			public void opened(final KeystoreManager source) {
+				final String alias;
+
+				try {
+					alias = UiUtil.showValues(MainPanel.this, localeUtil
+							.getString("alias"), localeUtil.getString("keypair"),
+							KeyUtil.getKeyPairAliases(source.getKeyStore()));
+				} catch (Exception err) {
+					err.printStackTrace();
+					UiUtil.showError(MainPanel.this, err.getMessage(),
+							localeUtil.getString("error"));
+					return;
+				}
+
+				if (alias == null) {
+					return;
+				}
+
+				final String keyPassword = UiUtil.getPassword(MainPanel.this,
+						localeUtil.getString("new.password"), localeUtil
 								.getString("key"));
 
-						if (password != null) {
-							manager.setKeyEntry(alias, ks.getKey(alias,
-									password.toCharArray()), password, ks
-									.getCertificateChain(alias));
-						}
-					}
+				if (keyPassword == null) {
+					return;
 				}
+
+				Task<Object> task = new Task<Object>(MainPanel.this, localeUtil
+						.getString("import") + " " + alias) {
+					protected Object doInBackground() throws Exception {
+						source.copyKeyEntry(alias, keyPassword, manager, alias,
+								keyPassword);
+
+						return null;
+					}
+				};
+
+				task.setCancellable(false);
+				tasks.execute(task);
 			}
-		} catch (Exception err) {
-			UiUtil.showError(this, err.getMessage(), localeUtil
-					.getString("error"));
-			err.printStackTrace();
-		} finally {
-			setCursor(new Cursor(java.awt.Cursor.DEFAULT_CURSOR));
-		}
+		});
 	}
 
 	/**
@@ -890,6 +1396,8 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	 * @pram evt
 	 */
 	public void entryImported(KeystoreEvent evt) {
+		trustIndex = null;
+
 		try {
 			statusLabel.setText(manager.getSize() + " "
 					+ localeUtil.getString("entries"));
@@ -903,6 +1411,7 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	 * @pram evt
 	 */
 	public void entryDeleted(KeystoreEvent evt) {
+		trustIndex = null;
 		deleteButton.setEnabled(false);
 		exportButton.setEnabled(false);
 		infoButton.setEnabled(false);
@@ -926,6 +1435,9 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 	 * Keystore Loaded
 	 */
 	public void keyStoreLoaded(KeystoreEvent evt) {
+		// Drop trust index of previous store
+		trustIndex = null;
+
 		// Clear table
 		table.clearSelection();
 
@@ -944,6 +1456,9 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		importCertItem.setEnabled(true);
 		propItem.setEnabled(false);
 		passwordItem.setEnabled(true);
+		exportCertsItem.setEnabled(true);
+		duplicatesItem.setEnabled(true);
+		expiringItem.setEnabled(true);
 		propButton.setEnabled(true);
 		propItem.setEnabled(true);
 
@@ -958,6 +1473,14 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		}
 	}
 
+	/**
+	 * Key Store Saved
+	 * 
+	 * @param evt Keystore Event
+	 */
+	public void keyStoreSaved(KeystoreEvent evt) {
+	}
+
 	/**
 	 * Set Delete Button
 	 * 
@@ -1039,6 +1562,33 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		this.passwordItem = passwordItem;
 	}
 
+	/**
+	 * Set Export Certificates Item
+	 * 
+	 * @param exportCertsItem
+	 */
+	public void setExportCertsItem(JMenuItem exportCertsItem) {
+		this.exportCertsItem = exportCertsItem;
+	}
+
+	/**
+	 * Set Duplicates Item
+	 * 
+	 * @param duplicatesItem
+	 */
+	public void setDuplicatesItem(JMenuItem duplicatesItem) {
+		this.duplicatesItem = duplicatesItem;
+	}
+
+	/**
+	 * Set Expiring Item
+	 * 
+	 * @param expiringItem
+	 */
+	public void setExpiringItem(JMenuItem expiringItem) {
+		this.expiringItem = expiringItem;
+	}
+
 	/**
 	 * Set Prop Item
 	 * 
@@ -1084,4 +1634,18 @@ public class MainPanel extends JPanel implements ActionListener, MouseListener,
 		this.renameEntryItem = renameEntryItem;
 	}
 
+
+	/**
+	 * Handler Of A Key Store Session Opened In The Background
+	 * 
+	 */
+	private interface SessionHandler {
+
+		/**
+		 * Session Opened, Called On The Event Dispatch Thread
+		 * 
+		 * @param session Key Store Manager
+		 */
+		public void opened(KeystoreManager session);
+	}
 }
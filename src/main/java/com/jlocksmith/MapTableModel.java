@@ -110,4 +110,19 @@ public class MapTableModel extends SortableTableModel {
 		keys[row1] = keys[row2];
 		keys[row2] = temp;
 	}
+
+	/**
+	 * Apply Row Permutation
+	 * 
+	 * @param perm Permutation (new row to old row)
+	 */
+	protected void applyPermutation(int[] perm) {
+		Object[] sorted = new Object[keys.length];
+
+		for (int i = 0; i < perm.length; i++) {
+			sorted[i] = keys[perm[i]];
+		}
+
+		keys = sorted;
+	}
 }
@@ -0,0 +1,342 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.jlocksmith.util.PemEncoder;
+
+/**
+ * PEM Exporter. Streams the certificates of a key store to one PEM bundle, to
+ * one file per alias or to a ZIP archive. Certificates are encoded one at a
+ * time into a reusable buffer which is written to the channel when full, so
+ * memory use does not grow with the number of entries.
+ * 
+ * @author Derek Helbert
+ */
+public class PemExporter {
+
+	/** One PEM Bundle */
+	public static final int BUNDLE = 0;
+
+	/** One File Per Alias */
+	public static final int DIRECTORY = 1;
+
+	/** ZIP Archive With One Entry Per Alias */
+	public static final int ZIP = 2;
+
+	/** PEM File Extension */
+	public static final String EXTENSION = ".pem";
+
+	/** Buffer Size */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Key Store Manager */
+	private KeystoreManager manager;
+
+	/** Encode Buffer */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/** File Names In Use */
+	private Set<String> names = new HashSet<String>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param manager Key Store Manager
+	 */
+	public PemExporter(KeystoreManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Get Format From Target Name. Names ending with .zip are archives, names
+	 * ending with .pem bundles and anything else a directory.
+	 * 
+	 * @param target Target File
+	 * 
+	 * @return int
+	 */
+	public static int getFormat(File target) {
+		String name = target.getName().toLowerCase();
+
+		if (name.endsWith(".zip")) {
+			return ZIP;
+		}
+
+		if (name.endsWith(EXTENSION) || name.endsWith(".crt")) {
+			return BUNDLE;
+		}
+
+		return DIRECTORY;
+	}
+
+	/**
+	 * Export All Certificates
+	 * 
+	 * @param target Target File Or Directory
+	 * @param format BUNDLE, DIRECTORY or ZIP
+	 * 
+	 * @return Number Of Certificates Written
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 * @throws CertificateEncodingException
+	 */
+	public int exportAll(File target, int format) throws IOException,
+			KeyStoreException, CertificateEncodingException {
+		return export(manager.getAliases(), target, format);
+	}
+
+	/**
+	 * Export Certificates. Aliases without a certificate are skipped, the
+	 * first certificate of the chain is written for key pair entries.
+	 * 
+	 * @param aliases Aliases To Export
+	 * @param target Target File Or Directory
+	 * @param format BUNDLE, DIRECTORY or ZIP
+	 * 
+	 * @return Number Of Certificates Written
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 * @throws CertificateEncodingException
+	 */
+	public int export(List<String> aliases, File target, int format)
+			throws IOException, KeyStoreException,
+			CertificateEncodingException {
+		names.clear();
+		buffer.clear();
+
+		switch (format) {
+		case BUNDLE:
+			return exportBundle(aliases, target);
+		case DIRECTORY:
+			return exportDirectory(aliases, target);
+		case ZIP:
+			return exportZip(aliases, target);
+		default:
+			throw new IllegalArgumentException("Unknown format " + format);
+		}
+	}
+
+	/**
+	 * Export To One Bundle
+	 * 
+	 * @param aliases Aliases
+	 * @param file Bundle File
+	 * 
+	 * @return int
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 * @throws CertificateEncodingException
+	 */
+	private int exportBundle(List<String> aliases, File file)
+			throws IOException, KeyStoreException,
+			CertificateEncodingException {
+		WritableByteChannel channel = new FileOutputStream(file).getChannel();
+		int count = 0;
+
+		try {
+			for (int i = 0; i < aliases.size(); i++) {
+				Certificate cert = manager.getCertificate(aliases.get(i));
+
+				if (cert != null) {
+					encode(cert, channel);
+					count++;
+				}
+			}
+
+			drain(channel);
+		} finally {
+			channel.close();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Export One File Per Alias
+	 * 
+	 * @param aliases Aliases
+	 * @param dir Directory
+	 * 
+	 * @return int
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 * @throws CertificateEncodingException
+	 */
+	private int exportDirectory(List<String> aliases, File dir)
+			throws IOException, KeyStoreException,
+			CertificateEncodingException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create " + dir);
+		}
+
+		int count = 0;
+
+		for (int i = 0; i < aliases.size(); i++) {
+			Certificate cert = manager.getCertificate(aliases.get(i));
+
+			if (cert == null) {
+				continue;
+			}
+
+			WritableByteChannel channel = new FileOutputStream(new File(dir,
+					fileName(aliases.get(i)))).getChannel();
+
+			try {
+				encode(cert, channel);
+				drain(channel);
+			} finally {
+				channel.close();
+			}
+
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Export To ZIP Archive
+	 * 
+	 * @param aliases Aliases
+	 * @param file Archive File
+	 * 
+	 * @return int
+	 * 
+	 * @throws IOException
+	 * @throws KeyStoreException
+	 * @throws CertificateEncodingException
+	 */
+	private int exportZip(List<String> aliases, File file) throws IOException,
+			KeyStoreException, CertificateEncodingException {
+		ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE));
+		WritableByteChannel channel = Channels.newChannel(zip);
+		int count = 0;
+
+		try {
+			for (int i = 0; i < aliases.size(); i++) {
+				Certificate cert = manager.getCertificate(aliases.get(i));
+
+				if (cert == null) {
+					continue;
+				}
+
+				zip.putNextEntry(new ZipEntry(fileName(aliases.get(i))));
+				encode(cert, channel);
+				drain(channel);
+				zip.closeEntry();
+				count++;
+			}
+		} finally {
+			zip.close();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Encode Certificate Into The Buffer, Writing Out The Buffer First When It
+	 * Is Too Full
+	 * 
+	 * @param cert Certificate
+	 * @param channel Channel
+	 * 
+	 * @throws IOException
+	 * @throws CertificateEncodingException
+	 */
+	private void encode(Certificate cert, WritableByteChannel channel)
+			throws IOException, CertificateEncodingException {
+		byte[] der = cert.getEncoded();
+		int length = PemEncoder.getEncodedLength(PemEncoder.CERTIFICATE,
+				der.length);
+
+		if (buffer.remaining() < length) {
+			drain(channel);
+
+			// Larger than any certificate seen before
+			if (buffer.capacity() < length) {
+				buffer = ByteBuffer.allocate(length);
+			}
+		}
+
+		PemEncoder.encode(PemEncoder.CERTIFICATE, der, buffer);
+	}
+
+	/**
+	 * Write Buffer To Channel
+	 * 
+	 * @param channel Channel
+	 * 
+	 * @throws IOException
+	 */
+	private void drain(WritableByteChannel channel) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Get Unique File Name For Alias
+	 * 
+	 * @param alias Alias
+	 * 
+	 * @return String
+	 */
+	private String fileName(String alias) {
+		StringBuilder sb = new StringBuilder(alias.length());
+
+		for (int i = 0; i < alias.length(); i++) {
+			char c = alias.charAt(i);
+			sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '.'
+					|| c == '_' ? c : '_');
+		}
+
+		String base = sb.toString();
+		String name = base + EXTENSION;
+
+		for (int n = 1; !names.add(name); n++) {
+			name = base + "-" + n + EXTENSION;
+		}
+
+		return name;
+	}
+}
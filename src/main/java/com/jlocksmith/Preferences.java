@@ -23,6 +23,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
 
+import com.jlocksmith.util.KeyPairPool;
 import com.jlocksmith.util.Util;
 
 /**
@@ -41,9 +42,24 @@ public class Preferences {
 	/** Ca Certs Keystore Path */
 	private String caCertsKeystorePassword = "changeit";
 
+	/** Key Pair Pool Depth */
+	private int keyPairPoolDepth = KeyPairPool.DEFAULT_DEPTH;
+
+	/** Serial Number Mode */
+	private String serialNumberMode = SERIAL_RANDOM;
+
+	/** Random Serial Numbers */
+	public static final String SERIAL_RANDOM = "random";
+
+	/** Serial Numbers Counted Per Issuer */
+	public static final String SERIAL_MONOTONIC = "monotonic";
+
 	/** Pref File */
 	private static String prefFile = ".jlocksmith";
 
+	/** Serial Number Counter File */
+	private static String serialFile = ".jlocksmith-serials";
+
 	/** Use CA Certs Key */
 	private static String USECACERTS = "use.cacerts";
 
@@ -53,6 +69,12 @@ public class Preferences {
 	/** CA Certs Path Key */
 	private static String CACERTSPASSWD = "cacerts.password";
 
+	/** Key Pair Pool Depth Key */
+	private static String KEYPAIRPOOL = "keypair.pool.depth";
+
+	/** Serial Number Mode Key */
+	private static String SERIALMODE = "serial.mode";
+
 	/**
 	 * Constructor
 	 * 
@@ -116,6 +138,53 @@ public class Preferences {
 		this.caCertsKeystorePassword = caCertsKeystorePassword;
 	}
 
+	/**
+	 * Get Number Of Key Pairs Generated Ahead Per Algorithm And Size
+	 * 
+	 * @return int
+	 */
+	public int getKeyPairPoolDepth() {
+		return keyPairPoolDepth;
+	}
+
+	/**
+	 * Set Number Of Key Pairs Generated Ahead Per Algorithm And Size
+	 * 
+	 * @param keyPairPoolDepth
+	 */
+	public void setKeyPairPoolDepth(int keyPairPoolDepth) {
+		this.keyPairPoolDepth = keyPairPoolDepth;
+	}
+
+	/**
+	 * Get Serial Number Mode
+	 * 
+	 * @return String SERIAL_RANDOM or SERIAL_MONOTONIC
+	 */
+	public String getSerialNumberMode() {
+		return serialNumberMode;
+	}
+
+	/**
+	 * Set Serial Number Mode
+	 * 
+	 * @param serialNumberMode SERIAL_RANDOM or SERIAL_MONOTONIC
+	 */
+	public void setSerialNumberMode(String serialNumberMode) {
+		this.serialNumberMode = SERIAL_MONOTONIC.equals(serialNumberMode) ? SERIAL_MONOTONIC
+				: SERIAL_RANDOM;
+	}
+
+	/**
+	 * Get Serial Number Counter File
+	 * 
+	 * @return File
+	 */
+	public File getSerialNumberFile() {
+		return new File(Util.getUserHome() + Util.getFileSeparator()
+				+ serialFile);
+	}
+
 	/**
 	 * Load
 	 * 
@@ -135,6 +204,15 @@ public class Preferences {
 			setUseCaCertsKeystore("true".equals(prop.getProperty(USECACERTS)));
 			setCaCertsKeystorePath(prop.getProperty(CACERTSPATH));
 			setCaCertsKeystorePassword(prop.getProperty(CACERTSPASSWD));
+
+			try {
+				setKeyPairPoolDepth(Integer.parseInt(prop.getProperty(
+						KEYPAIRPOOL, String.valueOf(KeyPairPool.DEFAULT_DEPTH))));
+			} catch (NumberFormatException err) {
+				setKeyPairPoolDepth(KeyPairPool.DEFAULT_DEPTH);
+			}
+
+			setSerialNumberMode(prop.getProperty(SERIALMODE));
 		}
 	}
 
@@ -164,6 +242,8 @@ public class Preferences {
 				: caCertsKeystorePath);
 		prop.setProperty(CACERTSPASSWD, caCertsKeystorePassword == null ? ""
 				: caCertsKeystorePassword);
+		prop.setProperty(KEYPAIRPOOL, String.valueOf(keyPairPoolDepth));
+		prop.setProperty(SERIALMODE, serialNumberMode);
 
 		FileOutputStream fos = new FileOutputStream(Util.getUserHome()
 				+ Util.getFileSeparator() + prefFile);
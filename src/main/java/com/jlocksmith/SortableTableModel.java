@@ -31,48 +31,192 @@ public abstract class SortableTableModel extends AbstractTableModel {
 	 */
 	private static final long serialVersionUID = -6256581706844375146L;
 
+	/** Sorted Column, -1 If Unsorted */
+	private int sortColumn = -1;
+
+	/** Sorted Ascending Flag */
+	private boolean sortAscending = true;
+
 	/**
 	 * Swap Rows
 	 * 
 	 * @param row
 	 */
 	public abstract void swapRows(int row1, int row2);
-	
+
+	/**
+	 * Apply Row Permutation. After this call row <code>i</code> must hold
+	 * the row previously found at <code>perm[i]</code>. The default
+	 * implementation walks the permutation cycles with {@link #swapRows},
+	 * models with a backing array should override it with a bulk copy.
+	 * 
+	 * @param perm Permutation (new row to old row)
+	 */
+	protected void applyPermutation(int[] perm) {
+		boolean[] done = new boolean[perm.length];
+
+		for (int i = 0; i < perm.length; i++) {
+			if (done[i]) {
+				continue;
+			}
+
+			int j = i;
+
+			while (true) {
+				done[j] = true;
+				int k = perm[j];
+
+				if (k == i) {
+					break;
+				}
+
+				swapRows(j, k);
+				j = k;
+			}
+		}
+	}
+
 	/**
 	 * Sort Rows Based on Selected Column. All values in column must implement
-	 * Comparable interface.
+	 * Comparable interface. Column values are read once, the row permutation
+	 * is merge sorted (stable) and applied in one step.
 	 *
 	 * @param col       Column Number
 	 * @param ascending Ascending Flag
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void sort(int col, boolean ascending)
 	{
 		int n = getRowCount();
-		
-		for (int i = 0; i < n - 1; i++)
-		{
-			for (int j = 0; j < n - 1 - i; j++)
-			{
-				if( ascending )
-				{
-					if( ((Comparable)getValueAt(j + 1,col)).compareTo(getValueAt(j,col)) < 0 )
-					{
-						swapRows(j,j+1);
-					}
-				}
-				else
-				{
-					if( ((Comparable)getValueAt(j + 1,col)).compareTo(getValueAt(j,col)) > 0 )
-					{
-						swapRows(j,j+1);
-					}
+
+		sortColumn = col;
+		sortAscending = ascending;
+
+		if (n < 2) {
+			fireTableDataChanged();
+			return;
+		}
+
+		Object[] values = new Object[n];
+		int[] perm = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			values[i] = getValueAt(i, col);
+			perm[i] = i;
+		}
+
+		sortPermutation(perm, values, ascending);
+
+		applyPermutation(perm);
+
+		// Redraw table
+		fireTableDataChanged();
+	}
+
+	/**
+	 * Get Sorted Column
+	 * 
+	 * @return int -1 if not sorted
+	 */
+	public int getSortColumn() {
+		return sortColumn;
+	}
+
+	/**
+	 * Is Sorted Ascending
+	 * 
+	 * @return boolean
+	 */
+	public boolean isSortAscending() {
+		return sortAscending;
+	}
+
+	/**
+	 * Sort Permutation By Values
+	 * 
+	 * @param perm Row Indexes
+	 * @param values Column Values By Row
+	 * @param ascending Ascending Flag
+	 */
+	static void sortPermutation(int[] perm, Object[] values, boolean ascending) {
+		int[] work = new int[perm.length];
+		mergeSort(perm, work, 0, perm.length, values, ascending ? 1 : -1);
+	}
+
+	/**
+	 * Merge Sort
+	 * 
+	 * @param a Row Indexes
+	 * @param work Work Buffer
+	 * @param from From Index (inclusive)
+	 * @param to To Index (exclusive)
+	 * @param values Column Values By Row
+	 * @param sign 1 Ascending, -1 Descending
+	 */
+	private static void mergeSort(int[] a, int[] work, int from, int to,
+			Object[] values, int sign) {
+		int len = to - from;
+
+		// Insertion sort small runs
+		if (len <= 7) {
+			for (int i = from + 1; i < to; i++) {
+				int x = a[i];
+				int j = i - 1;
+
+				while (j >= from && sign * compare(values[a[j]], values[x]) > 0) {
+					a[j + 1] = a[j];
+					j--;
 				}
+
+				a[j + 1] = x;
 			}
-			
-			// Redraw table
-			fireTableDataChanged();
+
+			return;
 		}
+
+		int mid = (from + to) >>> 1;
+
+		mergeSort(a, work, from, mid, values, sign);
+		mergeSort(a, work, mid, to, values, sign);
+
+		// Already ordered
+		if (sign * compare(values[a[mid - 1]], values[a[mid]]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(a, from, work, from, len);
+
+		int i = from;
+		int j = mid;
+
+		for (int k = from; k < to; k++) {
+			if (j >= to
+					|| (i < mid && sign * compare(values[work[i]], values[work[j]]) <= 0)) {
+				a[k] = work[i++];
+			} else {
+				a[k] = work[j++];
+			}
+		}
+	}
+
+	/**
+	 * Compare Values, Nulls First
+	 * 
+	 * @param o1
+	 * @param o2
+	 * 
+	 * @return int
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected static int compare(Object o1, Object o2) {
+		if (o1 == o2) {
+			return 0;
+		} else if (o1 == null) {
+			return -1;
+		} else if (o2 == null) {
+			return 1;
+		}
+
+		return ((Comparable) o1).compareTo(o2);
 	}
 
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.awt.Component;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import com.jlocksmith.util.LocaleUtil;
+import com.jlocksmith.util.UiUtil;
+
+/**
+ * Background Task. The work is done in doInBackground on a TaskExecutor
+ * thread, the outcome is handed to succeeded, failed or cancelled on the event
+ * dispatch thread. Failures are shown in an error dialog unless failed is
+ * overridden.
+ * 
+ * @author Derek Helbert
+ */
+public abstract class Task<T> extends SwingWorker<T, Object> {
+
+	/** Status Property */
+	public static final String STATUS = "status";
+
+	/** Parent Component For Error Dialogs */
+	private Component parent;
+
+	/** Title */
+	private String title;
+
+	/** Can Be Cancelled */
+	private boolean cancellable = true;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parent Parent Component For Error Dialogs
+	 * @param title Title Shown While Running
+	 */
+	public Task(Component parent, String title) {
+		this.parent = parent;
+		this.title = title;
+	}
+
+	/**
+	 * Get Title
+	 * 
+	 * @return String
+	 */
+	public String getTitle() {
+		return title;
+	}
+
+	/**
+	 * Is Cancellable
+	 * 
+	 * @return boolean
+	 */
+	public boolean isCancellable() {
+		return cancellable;
+	}
+
+	/**
+	 * Set Cancellable. Tasks whose work would go on after a cancel, like a
+	 * save, should not offer it.
+	 * 
+	 * @param cancellable Cancellable
+	 */
+	public void setCancellable(boolean cancellable) {
+		this.cancellable = cancellable;
+	}
+
+	/**
+	 * Set Status Text, May Be Called From doInBackground
+	 * 
+	 * @param status Status Text
+	 */
+	protected void setStatus(String status) {
+		firePropertyChange(STATUS, null, status);
+	}
+
+	/**
+	 * Set Progress Of A Number Of Steps, May Be Called From doInBackground
+	 * 
+	 * @param done Steps Done
+	 * @param total Total Steps
+	 */
+	protected void setProgress(int done, int total) {
+		setProgress(total <= 0 ? 0 : (int) Math.min(100, done * 100L / total));
+	}
+
+	/**
+	 * Done, Dispatches The Outcome
+	 * 
+	 */
+	protected final void done() {
+		if (isCancelled()) {
+			cancelled();
+			return;
+		}
+
+		try {
+			succeeded(get());
+		} catch (ExecutionException err) {
+			failed(err.getCause() == null ? err : err.getCause());
+		} catch (CancellationException err) {
+			cancelled();
+		} catch (InterruptedException err) {
+			failed(err);
+		}
+	}
+
+	/**
+	 * Succeeded, Called On The Event Dispatch Thread
+	 * 
+	 * @param result Result
+	 */
+	protected void succeeded(T result) {
+	}
+
+	/**
+	 * Failed, Called On The Event Dispatch Thread
+	 * 
+	 * @param err Error
+	 */
+	protected void failed(Throwable err) {
+		err.printStackTrace();
+		UiUtil.showError(parent, err.getMessage(), LocaleUtil.getInstance()
+				.getString("error"));
+	}
+
+	/**
+	 * Cancelled, Called On The Event Dispatch Thread
+	 * 
+	 */
+	protected void cancelled() {
+	}
+}
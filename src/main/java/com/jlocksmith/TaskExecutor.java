@@ -0,0 +1,193 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+
+/**
+ * Task Executor. Runs background tasks on a bounded pool of worker threads so
+ * several independent tasks, e.g. an SSL probe and a save, may run at once
+ * while further tasks wait in line. Listeners are told on the event dispatch
+ * thread when a task starts and finishes.
+ * 
+ * @author Derek Helbert
+ */
+public class TaskExecutor {
+
+	/** Default Number Of Worker Threads */
+	public static final int DEFAULT_THREADS = 4;
+
+	/** Idle Worker Timeout In Seconds */
+	private static final long KEEP_ALIVE = 30;
+
+	/** Worker Pool */
+	private ExecutorService pool;
+
+	/** Running And Queued Tasks */
+	private List<Task<?>> tasks = new CopyOnWriteArrayList<Task<?>>();
+
+	/** Listeners */
+	private List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param threads Number Of Worker Threads
+	 */
+	public TaskExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				KEEP_ALIVE, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "jlocksmith-task");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		pool = executor;
+	}
+
+	/**
+	 * Get Instance
+	 * 
+	 * @return TaskExecutor
+	 */
+	public static TaskExecutor getInstance() {
+		return Holder.EXECUTOR;
+	}
+
+	/**
+	 * Execute Task
+	 * 
+	 * @param task Task
+	 */
+	public void execute(final Task<?> task) {
+		tasks.add(task);
+
+		task.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("state".equals(evt.getPropertyName())
+						&& evt.getNewValue() == SwingWorker.StateValue.DONE) {
+					tasks.remove(task);
+
+					for (Listener listener : listeners) {
+						listener.taskFinished(task);
+					}
+				}
+			}
+		});
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				// Skip tasks cancelled before the listeners heard of them
+				if (!tasks.contains(task)) {
+					return;
+				}
+
+				for (Listener listener : listeners) {
+					listener.taskStarted(task);
+				}
+			}
+		});
+
+		pool.execute(task);
+	}
+
+	/**
+	 * Get Running And Queued Tasks
+	 * 
+	 * @return List
+	 */
+	public List<Task<?>> getTasks() {
+		return new ArrayList<Task<?>>(tasks);
+	}
+
+	/**
+	 * Cancel All Cancellable Tasks
+	 * 
+	 */
+	public void cancelAll() {
+		for (Task<?> task : tasks) {
+			if (task.isCancellable()) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Add Listener
+	 * 
+	 * @param listener Listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove Listener
+	 * 
+	 * @param listener Listener
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Task Listener
+	 * 
+	 */
+	public interface Listener {
+
+		/**
+		 * Task Started Or Queued
+		 * 
+		 * @param task Task
+		 */
+		public void taskStarted(Task<?> task);
+
+		/**
+		 * Task Finished, Failed Or Cancelled
+		 * 
+		 * @param task Task
+		 */
+		public void taskFinished(Task<?> task);
+	}
+
+	/**
+	 * Lazy Holder Of The Application Executor
+	 * 
+	 */
+	private static class Holder {
+
+		/** Executor */
+		static final TaskExecutor EXECUTOR = new TaskExecutor(DEFAULT_THREADS);
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith;
+
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
+import com.jlocksmith.util.LocaleUtil;
+import com.jlocksmith.util.UiUtil;
+
+/**
+ * Task Panel. Shows one row per running task in the status panel with its
+ * title, progress and a cancel button.
+ * 
+ * @author Derek Helbert
+ */
+@SuppressWarnings("serial")
+public class TaskPanel extends JPanel implements TaskExecutor.Listener {
+
+	/** Progress Bar Size */
+	private static final Dimension BAR_SIZE = new Dimension(120, 16);
+
+	/** Rows By Task */
+	private Map<Task<?>, JPanel> rows = new HashMap<Task<?>, JPanel>();
+
+	/** Locale Util */
+	private LocaleUtil localeUtil = LocaleUtil.getInstance();
+
+	/** UI Util */
+	private UiUtil uiUtil = new UiUtil();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param executor Task Executor
+	 */
+	public TaskPanel(TaskExecutor executor) {
+		setLayout(new FlowLayout(FlowLayout.LEFT, 5, 0));
+		executor.addListener(this);
+	}
+
+	/**
+	 * Task Started
+	 * 
+	 * @param task Task
+	 */
+	public void taskStarted(final Task<?> task) {
+		final JLabel label = new JLabel(task.getTitle());
+		final JProgressBar bar = new JProgressBar(0, 100);
+		bar.setIndeterminate(true);
+		bar.setPreferredSize(BAR_SIZE);
+
+		JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
+		row.add(label);
+		row.add(bar);
+
+		if (task.isCancellable()) {
+			JButton cancel = new JButton(uiUtil.getImageIcon("x.gif"));
+			cancel.setToolTipText(localeUtil.getString("cancel"));
+			cancel.setMargin(new Insets(0, 0, 0, 0));
+			cancel.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					task.cancel(true);
+				}
+			});
+			row.add(cancel);
+		}
+
+		task.addPropertyChangeListener(new PropertyChangeListener() {
+			public void propertyChange(PropertyChangeEvent evt) {
+				if ("progress".equals(evt.getPropertyName())) {
+					bar.setIndeterminate(false);
+					bar.setValue(((Integer) evt.getNewValue()).intValue());
+				} else if (Task.STATUS.equals(evt.getPropertyName())) {
+					label.setText(task.getTitle() + " - " + evt.getNewValue());
+				}
+			}
+		});
+
+		rows.put(task, row);
+		add(row);
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Task Finished
+	 * 
+	 * @param task Task
+	 */
+	public void taskFinished(Task<?> task) {
+		JPanel row = rows.remove(task);
+
+		if (row != null) {
+			remove(row);
+			revalidate();
+			repaint();
+		}
+	}
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.bouncycastle.util.encoders.Base64;
+
+/**
+ * Certificate Reader. Reads PEM and DER certificate files one certificate at
+ * a time. The input is read in buffered chunks, PEM blocks are collected as
+ * bytes up to their end marker and DER objects are read by their encoded
+ * length, so only the certificate being parsed is held in memory.
+ * 
+ * @author Derek Helbert
+ */
+public class CertificateReader implements Closeable {
+
+	/** Chunk Size */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** DER Sequence Tag */
+	private static final int SEQUENCE = 0x30;
+
+	/** Bytes Looked Ahead For A PEM Begin Marker */
+	private static final int PEEK_SIZE = 8192;
+
+	/** PEM Begin Marker */
+	private static final String BEGIN = "-----BEGIN ";
+
+	/** PEM End Marker */
+	private static final String END = "-----END ";
+
+	/** Marker Character Set */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/** Input */
+	private InputStream in;
+
+	/** Line Buffer */
+	private byte[] line = new byte[128];
+
+	/** Line Length */
+	private int lineLength = 0;
+
+	/** Block Buffer */
+	private ByteArrayOutputStream block = new ByteArrayOutputStream(4096);
+
+	/** Certificates Of A Bundle Object Not Yet Returned */
+	private LinkedList<X509Certificate> pending = new LinkedList<X509Certificate>();
+
+	/** Count */
+	private int count = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param in Input Stream
+	 */
+	public CertificateReader(InputStream in) {
+		this.in = new BufferedInputStream(in, CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param path File Path
+	 * 
+	 * @throws IOException
+	 */
+	public CertificateReader(String path) throws IOException {
+		this(new FileInputStream(path));
+	}
+
+	/**
+	 * Read Next Certificate
+	 * 
+	 * @return X509Certificate or null at end of input
+	 * 
+	 * @throws IOException
+	 * @throws CertificateException
+	 */
+	public X509Certificate read() throws IOException, CertificateException {
+		while (pending.isEmpty()) {
+			int b = skipWhitespace();
+
+			if (b == -1) {
+				return null;
+			}
+
+			if (b == SEQUENCE && !pemFollows()) {
+				parse(readDer());
+			} else {
+				byte[] encoded = readPem();
+
+				if (encoded == null) {
+					return null;
+				}
+
+				if (encoded.length > 0) {
+					parse(encoded);
+				}
+			}
+		}
+
+		count++;
+
+		return pending.removeFirst();
+	}
+
+	/**
+	 * Get Number Of Certificates Read
+	 * 
+	 * @return int
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Close
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Parse Encoded Certificate Or PKCS #7 Bundle
+	 * 
+	 * @param encoded Encoded Bytes
+	 * 
+	 * @throws CertificateException
+	 */
+	private void parse(byte[] encoded) throws CertificateException {
+		Iterator<? extends Certificate> it = CertificateUtil
+				.getCertificateFactory().generateCertificates(
+						new ByteArrayInputStream(encoded)).iterator();
+
+		while (it.hasNext()) {
+			pending.add(CertificateUtil.convertCertificate(it.next()));
+		}
+	}
+
+	/**
+	 * Skip Whitespace
+	 * 
+	 * @return First Byte Not Consumed or -1
+	 * 
+	 * @throws IOException
+	 */
+	private int skipWhitespace() throws IOException {
+		while (true) {
+			in.mark(1);
+			int b = in.read();
+
+			if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+				in.reset();
+				return b;
+			}
+		}
+	}
+
+	/**
+	 * PEM Follows. Text starting with the character 0 starts with the DER
+	 * sequence tag as well, so the input is only read as DER when the length
+	 * is in the long or indefinite form and no PEM begin marker follows
+	 * within the DER object.
+	 * 
+	 * @return boolean
+	 * 
+	 * @throws IOException
+	 */
+	private boolean pemFollows() throws IOException {
+		byte[] peek = new byte[PEEK_SIZE];
+		int n = 0;
+
+		in.mark(PEEK_SIZE);
+
+		try {
+			int r;
+
+			while (n < peek.length
+					&& (r = in.read(peek, n, peek.length - n)) != -1) {
+				n += r;
+			}
+		} finally {
+			in.reset();
+		}
+
+		if (n < 2 || (peek[1] & 0xff) < 0x80 || (peek[1] & 0xff) > 0x84) {
+			return true;
+		}
+
+		int octets = peek[1] & 0x7f;
+		long end = n;
+
+		if (octets > 0 && n >= 2 + octets) {
+			long length = 0;
+
+			for (int i = 0; i < octets; i++) {
+				length = (length << 8) | (peek[2 + i] & 0xff);
+			}
+
+			end = Math.min(n, 2 + octets + length);
+		}
+
+		byte[] begin = BEGIN.getBytes(ASCII);
+
+		for (int i = 0; i + begin.length <= end; i++) {
+			int j = 0;
+
+			while (j < begin.length && peek[i + j] == begin[j]) {
+				j++;
+			}
+
+			if (j == begin.length) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Read One DER Object
+	 * 
+	 * @return byte[]
+	 * 
+	 * @throws IOException
+	 */
+	private byte[] readDer() throws IOException {
+		block.reset();
+		block.write(readByte());
+
+		int first = readByte();
+		block.write(first);
+
+		// Indefinite length, hand the rest of the input to the parser
+		if (first == 0x80) {
+			copy(Long.MAX_VALUE);
+			return block.toByteArray();
+		}
+
+		long length = first;
+
+		if ((first & 0x80) != 0) {
+			int octets = first & 0x7f;
+
+			if (octets > 4) {
+				throw new IOException("DER length too long");
+			}
+
+			length = 0;
+
+			for (int i = 0; i < octets; i++) {
+				int b = readByte();
+				block.write(b);
+				length = (length << 8) | b;
+			}
+		}
+
+		if (copy(length) < length) {
+			throw new EOFException("Truncated DER object");
+		}
+
+		return block.toByteArray();
+	}
+
+	/**
+	 * Read One PEM Block. Blocks other than certificates and PKCS #7 are
+	 * skipped and return an empty array.
+	 * 
+	 * @return Decoded Bytes or null at end of input
+	 * 
+	 * @throws IOException
+	 */
+	private byte[] readPem() throws IOException {
+		String label = null;
+
+		// Find begin marker
+		while (label == null) {
+			if (!readLine()) {
+				return null;
+			}
+
+			label = marker(BEGIN);
+		}
+
+		block.reset();
+
+		while (true) {
+			if (!readLine()) {
+				throw new EOFException("Missing PEM end marker for " + label);
+			}
+
+			if (marker(END) != null) {
+				break;
+			}
+
+			// Skip encapsulated headers
+			if (!contains(':')) {
+				block.write(line, 0, lineLength);
+			}
+		}
+
+		if (!"CERTIFICATE".equals(label) && !"X509 CERTIFICATE".equals(label)
+				&& !"PKCS7".equals(label)) {
+			return new byte[0];
+		}
+
+		return Base64.decode(block.toByteArray());
+	}
+
+	/**
+	 * Read Line Without Terminator
+	 * 
+	 * @return boolean false at end of input
+	 * 
+	 * @throws IOException
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+
+		int b = in.read();
+
+		if (b == -1) {
+			return false;
+		}
+
+		while (b != -1 && b != '\n') {
+			if (b != '\r') {
+				if (lineLength == line.length) {
+					byte[] grown = new byte[line.length * 2];
+					System.arraycopy(line, 0, grown, 0, lineLength);
+					line = grown;
+				}
+
+				line[lineLength++] = (byte) b;
+			}
+
+			b = in.read();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get Marker Label
+	 * 
+	 * @param prefix Marker Prefix
+	 * 
+	 * @return Label or null if the line is not the marker
+	 */
+	private String marker(String prefix) {
+		if (lineLength < prefix.length()) {
+			return null;
+		}
+
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line[i] != prefix.charAt(i)) {
+				return null;
+			}
+		}
+
+		String text = new String(line, 0, lineLength, ASCII).trim();
+		int end = text.lastIndexOf("-----");
+
+		return end > prefix.length() ? text.substring(prefix.length(), end) : text.substring(prefix.length());
+	}
+
+	/**
+	 * Line Contains
+	 * 
+	 * @param c Character
+	 * 
+	 * @return boolean
+	 */
+	private boolean contains(char c) {
+		for (int i = 0; i < lineLength; i++) {
+			if (line[i] == c) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Read Byte
+	 * 
+	 * @return int
+	 * 
+	 * @throws IOException
+	 */
+	private int readByte() throws IOException {
+		int b = in.read();
+
+		if (b == -1) {
+			throw new EOFException("Truncated DER object");
+		}
+
+		return b;
+	}
+
+	/**
+	 * Copy Bytes To Block
+	 * 
+	 * @param length Maximum Number Of Bytes
+	 * 
+	 * @return Number Of Bytes Copied
+	 * 
+	 * @throws IOException
+	 */
+	private long copy(long length) throws IOException {
+		byte[] buffer = new byte[(int) Math.min(CHUNK_SIZE, Math.max(length, 1))];
+		long total = 0;
+
+		while (total < length) {
+			int n = in.read(buffer, 0, (int) Math.min(buffer.length, length - total));
+
+			if (n == -1) {
+				break;
+			}
+
+			block.write(buffer, 0, n);
+			total += n;
+		}
+
+		return total;
+	}
+}
@@ -18,41 +18,60 @@
 package com.jlocksmith.util;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
-
-import org.bouncycastle.asn1.DEROutputStream;
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERInteger;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DERObjectIdentifier;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.pkcs.CertificationRequest;
+import org.bouncycastle.asn1.pkcs.CertificationRequestInfo;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.AuthorityKeyIdentifier;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificateStructure;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V1TBSCertificateGenerator;
 import org.bouncycastle.asn1.x509.X509Name;
-import org.bouncycastle.jce.PKCS10CertificationRequest;
 import org.bouncycastle.jce.X509Principal;
-import org.bouncycastle.jce.X509V1CertificateGenerator;
 import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
+import org.bouncycastle.x509.extension.X509ExtensionUtil;
 
 /**
  * Certificate Utility
@@ -79,8 +98,46 @@ public class CertificateUtil {
 	/** X.509 Certificates Type */
 	public static final String X509 = "X.509";
 
+	/** Subject Key Identifier OID */
+	public static final String SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+
+	/** Authority Key Identifier OID */
+	public static final String AUTHORITY_KEY_IDENTIFIER = "2.5.29.35";
+
+	/** Maximum Certificates In A Chain */
+	private static final int MAX_CHAIN_LENGTH = 16;
+
+	/** Maximum Chains Per End Entity */
+	private static final int MAX_CHAINS = 32;
+
+	/** Certificate Factory Per Thread */
+	private static final ThreadLocal<CertificateFactory> FACTORY = new ThreadLocal<CertificateFactory>();
+
+	/** Serial Number Generator */
+	private static volatile SerialNumberGenerator serialNumberGenerator = new RandomSerialNumberGenerator();
+
+	/**
+	 * Get X.509 Certificate Factory Of Current Thread
+	 * 
+	 * @return CertificateFactory
+	 * 
+	 * @throws CertificateException
+	 */
+	public static CertificateFactory getCertificateFactory()
+			throws CertificateException {
+		CertificateFactory cf = FACTORY.get();
+
+		if (cf == null) {
+			cf = CertificateFactory.getInstance(X509);
+			FACTORY.set(cf);
+		}
+
+		return cf;
+	}
+
 	/**
-	 * Convert Certificate To X.509
+	 * Convert Certificate To X.509. X.509 certificates are returned as they
+	 * are, anything else is re-encoded and parsed.
 	 * 
 	 * @param cert
 	 * @return X509Certificate
@@ -88,9 +145,12 @@ public class CertificateUtil {
 	 */
 	public static X509Certificate convertCertificate(Certificate cert)
 			throws CertificateException {
-		CertificateFactory cf = CertificateFactory.getInstance(X509);
+		if (cert instanceof X509Certificate) {
+			return (X509Certificate) cert;
+		}
+
 		ByteArrayInputStream bais = new ByteArrayInputStream(cert.getEncoded());
-		return (X509Certificate) cf.generateCertificate(bais);
+		return (X509Certificate) getCertificateFactory().generateCertificate(bais);
 	}
 
 	/**
@@ -114,7 +174,9 @@ public class CertificateUtil {
 	}
 
 	/**
-	 * Generate PKCS10 CSR
+	 * Generate PKCS10 CSR. The CSR is signed with the signature algorithm of
+	 * the certificate when it is known and fits the private key, otherwise
+	 * with the default signature type of the private key.
 	 * 
 	 * @param cert X590 Certificate
 	 * @param privateKey Private Key
@@ -126,19 +188,33 @@ public class CertificateUtil {
 	public static void generatePKCS10CSR(X509Certificate cert,
 			PrivateKey privateKey, String path) throws Exception {
 		X509Name subject = new X509Name(cert.getSubjectDN().toString());
+		String sigAlg = cert.getSigAlgName();
+
+		// A CA may sign with another algorithm than the subject key supports
+		if (SignatureUtil.getSignatureOid(sigAlg) == null
+				|| !canSign(sigAlg, privateKey)) {
+			sigAlg = SignatureUtil.getDefaultSignatureType(privateKey
+					.getAlgorithm());
+		}
 
-		PKCS10CertificationRequest csr = new PKCS10CertificationRequest(cert
-				.getSigAlgName(), subject, cert.getPublicKey(), null,
-				privateKey);
+		CertificationRequestInfo info = new CertificationRequestInfo(subject,
+				getSubjectPublicKeyInfo(cert.getPublicKey()), new DERSet());
+		byte[] signature = sign(info.getDEREncoded(), sigAlg, privateKey);
 
 		// Verify CSR
-		csr.verify();
+		Signature verifier = Signature.getInstance(sigAlg);
+		verifier.initVerify(cert.getPublicKey());
+		verifier.update(info.getDEREncoded());
+
+		if (!verifier.verify(signature)) {
+			throw new SignatureException("CSR signature does not verify");
+		}
+
+		CertificationRequest csr = new CertificationRequest(info,
+				getAlgorithmIdentifier(sigAlg), new DERBitString(signature));
 
 		// Get Base 64 encoding of CSR
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DEROutputStream dos = new DEROutputStream(baos);
-		dos.writeObject(csr.getDERObject());
-		String sTmp = new String(Base64.encode(baos.toByteArray()));
+		String sTmp = new String(Base64.encode(csr.getDEREncoded()));
 
 		// CSR Header
 		String csrText = BEGIN_CERT_REQUEST + "\n";
@@ -269,35 +345,137 @@ public class CertificateUtil {
 			order.add(0, X509Principal.E);
 		}
 
-		// Get an X509 Version 1 Certificate generator
-		X509V1CertificateGenerator certGen = new X509V1CertificateGenerator();
+		// Build an X.509 Version 1 certificate
+		V1TBSCertificateGenerator tbsGen = new V1TBSCertificateGenerator();
+		AlgorithmIdentifier algId = getAlgorithmIdentifier(signatureType);
 
-		certGen.setIssuerDN(new X509Principal(order, attrs));
+		X509Principal issuer = new X509Principal(order, attrs);
+		tbsGen.setIssuer(issuer);
 
 		// Valid before and after dates now to iValidity days in the future
-		certGen.setNotBefore(new Date(System.currentTimeMillis()));
-		certGen.setNotAfter(new Date(System.currentTimeMillis() + ((long) validity * 24 * 60 * 60 * 1000)));
+		tbsGen.setStartDate(new Time(new Date(System.currentTimeMillis())));
+		tbsGen.setEndDate(new Time(new Date(System.currentTimeMillis() + ((long) validity * 24 * 60 * 60 * 1000))));
+
+		tbsGen.setSubject(new X509Principal(order, attrs));
+		tbsGen.setSubjectPublicKeyInfo(getSubjectPublicKeyInfo(publicKey));
+		tbsGen.setSignature(algId);
+		tbsGen.setSerialNumber(new DERInteger(serialNumberGenerator
+				.generate(new X500Principal(issuer.getEncoded()))));
+
+		// Sign with whichever provider implements the signature type
+		TBSCertificateStructure tbs = tbsGen.generateTBSCertificate();
+		ASN1EncodableVector cert = new ASN1EncodableVector();
+		cert.add(tbs);
+		cert.add(algId);
+		cert.add(new DERBitString(sign(tbs.getDEREncoded(), signatureType,
+				privateKey)));
+
+		return (X509Certificate) getCertificateFactory().generateCertificate(
+				new ByteArrayInputStream(new DERSequence(cert).getDEREncoded()));
+	}
+
+	/**
+	 * Get Signature Algorithm Identifier
+	 * 
+	 * @param signatureType Signature Type Or OID
+	 * 
+	 * @return AlgorithmIdentifier
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static AlgorithmIdentifier getAlgorithmIdentifier(
+			String signatureType) throws NoSuchAlgorithmException {
+		String oid = SignatureUtil.getSignatureOid(signatureType);
 
-		certGen.setSubjectDN(new X509Principal(order, attrs));
-		certGen.setPublicKey(publicKey);
-		certGen.setSignatureAlgorithm(signatureType);
-		certGen.setSerialNumber(generateX509SerialNumber());
+		if (oid == null) {
+			throw new NoSuchAlgorithmException("Unknown signature type "
+					+ signatureType);
+		}
 
-		// Generate an X.509 certificate, based on the current issuer and
-		// subject
-		X509Certificate cert = certGen.generateX509Certificate(privateKey);
+		// RSA signatures carry NULL parameters, DSA, ECDSA and EdDSA none
+		if (oid.startsWith(SignatureUtil.PKCS1_OID_PREFIX)
+				|| oid.startsWith(SignatureUtil.TELETRUST_RSA_OID_PREFIX)) {
+			return new AlgorithmIdentifier(new DERObjectIdentifier(oid),
+					new DERNull());
+		}
 
-		// Return the certificate
-		return cert;
+		return new AlgorithmIdentifier(new DERObjectIdentifier(oid));
 	}
 
 	/**
-	 * Generate Serial Number
+	 * Get Subject Public Key Info
+	 * 
+	 * @param publicKey Public Key
 	 * 
-	 * @return BigInteger
+	 * @return SubjectPublicKeyInfo
+	 * 
+	 * @throws IOException
 	 */
-	private static BigInteger generateX509SerialNumber() {
-		return new BigInteger(Long.toString(System.currentTimeMillis() / 1000));
+	private static SubjectPublicKeyInfo getSubjectPublicKeyInfo(
+			PublicKey publicKey) throws IOException {
+		ASN1InputStream in = new ASN1InputStream(publicKey.getEncoded());
+
+		try {
+			return new SubjectPublicKeyInfo((ASN1Sequence) in.readObject());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Sign
+	 * 
+	 * @param data Data To Sign
+	 * @param signatureType Signature Type
+	 * @param privateKey Private Key
+	 * 
+	 * @return byte[]
+	 * 
+	 * @throws GeneralSecurityException
+	 */
+	private static byte[] sign(byte[] data, String signatureType,
+			PrivateKey privateKey) throws GeneralSecurityException {
+		Signature signature = Signature.getInstance(signatureType);
+		signature.initSign(privateKey);
+		signature.update(data);
+
+		return signature.sign();
+	}
+
+	/**
+	 * Can Sign
+	 * 
+	 * @param signatureType Signature Type
+	 * @param privateKey Private Key
+	 * 
+	 * @return boolean
+	 */
+	private static boolean canSign(String signatureType, PrivateKey privateKey) {
+		try {
+			Signature.getInstance(signatureType).initSign(privateKey);
+		} catch (GeneralSecurityException err) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get Serial Number Generator
+	 * 
+	 * @return SerialNumberGenerator
+	 */
+	public static SerialNumberGenerator getSerialNumberGenerator() {
+		return serialNumberGenerator;
+	}
+
+	/**
+	 * Set Serial Number Generator Of Generated Certificates
+	 * 
+	 * @param generator Serial Number Generator
+	 */
+	public static void setSerialNumberGenerator(SerialNumberGenerator generator) {
+		serialNumberGenerator = generator;
 	}
 
 	/**
@@ -332,7 +510,8 @@ public class CertificateUtil {
 	}
 
 	/**
-	 * Verify X.509 Certificate
+	 * Verify X.509 Certificate. Results are memoized in the shared
+	 * {@link VerificationCache}.
 	 * 
 	 * @param signed Signed certificate
 	 * @param signer Signing certificate
@@ -341,13 +520,7 @@ public class CertificateUtil {
 	 */
 	public static boolean verifyCertificate(X509Certificate signed,
 			X509Certificate signer) {
-		try {
-			signed.verify(signer.getPublicKey());
-		} catch (Exception ex) {
-			return false;
-		}
-
-		return true;
+		return VerificationCache.getInstance().verify(signed, signer);
 	}
 
 	/**
@@ -361,72 +534,60 @@ public class CertificateUtil {
 	 * @throws KeyStoreException
 	 */
 	public static X509Certificate[] establishTrust(KeyStore[] keyStores, X509Certificate cert) throws KeyStoreException, CertificateException {
-		List<Certificate> certs = new ArrayList<Certificate>();
-
-		for (int iCnt = 0; iCnt < keyStores.length; iCnt++) {
-			certs.addAll(getCertificates(keyStores[iCnt]));
-		}
-
-		return verifyTrust(certs, cert);
+		return establishTrust(new TrustIndex[] { new TrustIndex(keyStores) }, cert);
 	}
 
 	/**
-	 * Get All Trusted Certificates
-	 * 
-	 * @param keyStore Keystore
+	 * Establish Trust
 	 * 
-	 * @return Collection
+	 * @param indexes Trust Indexes
+	 * @param cert Certificate
 	 * 
-	 * @throws KeyStoreException
+	 * @return X509Certificate[] or null if no trust path was found
 	 */
-	private static Collection<Certificate> getCertificates(KeyStore keyStore) throws KeyStoreException, CertificateException {
-		ArrayList<Certificate> vCerts = new ArrayList<Certificate>();
-
-		for (Enumeration<String> en = keyStore.aliases(); en.hasMoreElements();) {
-			String sAlias = en.nextElement();
-
-			if (keyStore.isCertificateEntry(sAlias)) {
-				vCerts.add(convertCertificate(keyStore.getCertificate(sAlias)));
-			}
-		}
-
-		return vCerts;
+	public static X509Certificate[] establishTrust(TrustIndex[] indexes, X509Certificate cert) {
+		return verifyTrust(indexes, cert, new HashSet<X509Certificate>());
 	}
 
 	/**
 	 * Verify Trust
 	 * 
+	 * @param indexes Trust Indexes
 	 * @param cert Certificate
-	 * @param testCerts Test Certificates
+	 * @param visited Issuers Already On The Path
 	 * 
 	 * @return X509Certificate[]
 	 */
-	private static X509Certificate[] verifyTrust(List<Certificate> testCerts, X509Certificate cert) {
-		for (int iCnt = 0; iCnt < testCerts.size(); iCnt++) {
-			X509Certificate compCert = (X509Certificate) testCerts.get(iCnt);
+	private static X509Certificate[] verifyTrust(TrustIndex[] indexes, X509Certificate cert, Set<X509Certificate> visited) {
+		for (int i = 0; i < indexes.length; i++) {
+			List<X509Certificate> issuers = indexes[i].findIssuers(cert);
+
+			for (int iCnt = 0; iCnt < issuers.size(); iCnt++) {
+				X509Certificate compCert = issuers.get(iCnt);
 
-			// Check certificate issuer
-			if (cert.getIssuerDN().equals(compCert.getSubjectDN())) {
 				// Verify Certificate
-				if (verifyCertificate(cert, compCert)) {
-					if (compCert.getSubjectDN().equals(compCert.getIssuerDN())) {
-						return new X509Certificate[] { cert, compCert };
-					}
+				if (!verifyCertificate(cert, compCert)) {
+					continue;
+				}
+
+				if (isSelfIssued(compCert)) {
+					return new X509Certificate[] { cert, compCert };
+				}
 
-					// Establish a chain of trust
-					X509Certificate[] tmpChain = verifyTrust(testCerts,
-							compCert);
+				// Cross signed loop
+				if (!visited.add(compCert)) {
+					continue;
+				}
 
-					if (tmpChain != null) {
-						X509Certificate[] trustChain = new X509Certificate[tmpChain.length + 1];
-						trustChain[0] = cert;
+				// Establish a chain of trust
+				X509Certificate[] tmpChain = verifyTrust(indexes, compCert, visited);
 
-						for (int j = 1; j <= tmpChain.length; j++) {
-							trustChain[j] = tmpChain[j - 1];
-						}
+				if (tmpChain != null) {
+					X509Certificate[] trustChain = new X509Certificate[tmpChain.length + 1];
+					trustChain[0] = cert;
+					System.arraycopy(tmpChain, 0, trustChain, 1, tmpChain.length);
 
-						return trustChain;
-					}
+					return trustChain;
 				}
 			}
 		}
@@ -435,55 +596,201 @@ public class CertificateUtil {
 	}
 
 	/**
-	 * Order X.509 Certificates
+	 * Get Subject Key Identifier
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return byte[] or null if not present
+	 */
+	public static byte[] getSubjectKeyIdentifier(X509Certificate cert) {
+		byte[] value = cert.getExtensionValue(SUBJECT_KEY_IDENTIFIER);
+
+		if (value == null) {
+			return null;
+		}
+
+		try {
+			return SubjectKeyIdentifier.getInstance(
+					X509ExtensionUtil.fromExtensionValue(value)).getKeyIdentifier();
+		} catch (Exception err) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get Authority Key Identifier
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return byte[] or null if not present
+	 */
+	public static byte[] getAuthorityKeyIdentifier(X509Certificate cert) {
+		byte[] value = cert.getExtensionValue(AUTHORITY_KEY_IDENTIFIER);
+
+		if (value == null) {
+			return null;
+		}
+
+		try {
+			return AuthorityKeyIdentifier.getInstance(
+					X509ExtensionUtil.fromExtensionValue(value)).getKeyIdentifier();
+		} catch (Exception err) {
+			return null;
+		}
+	}
+
+	/**
+	 * To Hex String
+	 * 
+	 * @param bytes Bytes
+	 * 
+	 * @return String
+	 */
+	public static String toHex(byte[] bytes) {
+		return new String(Hex.encode(bytes));
+	}
+
+	/**
+	 * Order X.509 Certificates. Returns the longest chain found in the
+	 * certificates, ordered from the end entity to the root.
 	 * 
 	 * @param certs X590 Certificates
 	 * 
 	 * @return X509Certificate[]
 	 */
 	public static X509Certificate[] orderX509CertChain(X509Certificate[] certs) {
-		int ordered = 0;
+		X509Certificate[][] chains = orderX509CertChains(certs);
 
-		X509Certificate[] clonedCerts = (X509Certificate[]) certs.clone();
-		X509Certificate[] orderedCerts = new X509Certificate[certs.length];
-		X509Certificate issuerCert = null;
+		if (chains.length == 0) {
+			return certs;
+		}
 
-		for (int i = 0; i < clonedCerts.length; i++) {
-			X509Certificate tempCert = clonedCerts[i];
+		X509Certificate[] longest = chains[0];
 
-			if (tempCert.getIssuerDN().equals(tempCert.getSubjectDN())) {
-				issuerCert = tempCert;
-				orderedCerts[ordered] = issuerCert;
-				ordered++;
+		for (int i = 1; i < chains.length; i++) {
+			if (chains[i].length > longest.length) {
+				longest = chains[i];
 			}
 		}
 
-		if (issuerCert == null) {
-			return certs;
+		return longest;
+	}
+
+	/**
+	 * Order X.509 Certificates Into Chains. Certificates are linked through a
+	 * subject and key identifier index built once. Every certificate which
+	 * issued no other certificate of the input starts a chain, a certificate
+	 * with several possible issuers (cross signed) yields one chain per
+	 * issuer. Cross signed authorities multiply the paths, so at most
+	 * MAX_CHAINS chains of at most MAX_CHAIN_LENGTH certificates are built
+	 * per end entity. Chains are ordered from the end entity to the root.
+	 * 
+	 * @param certs X590 Certificates
+	 * 
+	 * @return X509Certificate[][]
+	 */
+	public static X509Certificate[][] orderX509CertChains(X509Certificate[] certs) {
+		Set<X509Certificate> unique = new LinkedHashSet<X509Certificate>(Arrays.asList(certs));
+		TrustIndex index = new TrustIndex();
+
+		for (X509Certificate cert : unique) {
+			index.add(cert);
 		}
 
-		while (true) {
-			boolean found = false;
+		// Find every certificate that issued another one
+		Set<X509Certificate> issuers = new HashSet<X509Certificate>();
 
-			for (int i = 0; i < clonedCerts.length; i++) {
-				X509Certificate tempCert = clonedCerts[i];
+		for (X509Certificate cert : unique) {
+			if (!isSelfIssued(cert)) {
+				List<X509Certificate> candidates = index.findIssuers(cert);
 
-				if (tempCert.getIssuerDN().equals(issuerCert.getSubjectDN())
-						&& tempCert != issuerCert) {
-					issuerCert = tempCert;
-					orderedCerts[ordered] = issuerCert;
-					ordered++;
-					found = true;
-					break;
+				for (int i = 0; i < candidates.size(); i++) {
+					if (!candidates.get(i).equals(cert)) {
+						issuers.add(candidates.get(i));
+					}
 				}
 			}
+		}
 
-			if (!found) {
-				break;
+		List<X509Certificate[]> chains = new ArrayList<X509Certificate[]>();
+		List<X509Certificate> path = new ArrayList<X509Certificate>();
+
+		for (X509Certificate cert : unique) {
+			if (!issuers.contains(cert)) {
+				path.add(cert);
+				buildChains(index, path, chains, chains.size() + MAX_CHAINS);
+				path.clear();
 			}
 		}
 
-		return orderedCerts;
+		// Only issuers, certificates sign each other in a loop
+		if (chains.isEmpty() && !unique.isEmpty()) {
+			path.add(unique.iterator().next());
+			buildChains(index, path, chains, MAX_CHAINS);
+		}
+
+		return chains.toArray(new X509Certificate[chains.size()][]);
+	}
+
+	/**
+	 * Extend Path To Its Roots
+	 * 
+	 * @param index Certificate Index
+	 * @param path Path From End Entity
+	 * @param chains Completed Chains
+	 * @param limit Stop When This Many Chains Are Completed
+	 */
+	private static void buildChains(TrustIndex index, List<X509Certificate> path, List<X509Certificate[]> chains, int limit) {
+		X509Certificate cert = path.get(path.size() - 1);
+		List<X509Certificate> next = new ArrayList<X509Certificate>();
+
+		// A longer path is cut off where it is, as if it reached a root
+		if (!isSelfIssued(cert) && path.size() < MAX_CHAIN_LENGTH) {
+			List<X509Certificate> candidates = index.findIssuers(cert);
+
+			for (int i = 0; i < candidates.size(); i++) {
+				if (!path.contains(candidates.get(i))) {
+					next.add(candidates.get(i));
+				}
+			}
+
+			// Same subject used by several keys, keep real signers
+			if (next.size() > 1) {
+				List<X509Certificate> signers = new ArrayList<X509Certificate>();
+
+				for (int i = 0; i < next.size(); i++) {
+					if (verifyCertificate(cert, next.get(i))) {
+						signers.add(next.get(i));
+					}
+				}
+
+				if (!signers.isEmpty()) {
+					next = signers;
+				}
+			}
+		}
+
+		if (next.isEmpty()) {
+			chains.add(path.toArray(new X509Certificate[path.size()]));
+			return;
+		}
+
+		for (int i = 0; i < next.size() && chains.size() < limit; i++) {
+			path.add(next.get(i));
+			buildChains(index, path, chains, limit);
+			path.remove(path.size() - 1);
+		}
+	}
+
+	/**
+	 * Is Self Issued
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isSelfIssued(X509Certificate cert) {
+		return cert.getSubjectX500Principal().equals(cert.getIssuerX500Principal());
 	}
 
 	/**
@@ -499,10 +806,19 @@ public class CertificateUtil {
 	 */
 	public static X509Certificate readX509Certificate(String path)
 			throws CertificateException, IOException, KeyStoreException {
-		FileInputStream is = new FileInputStream(new File(path));
-		CertificateFactory cf = CertificateFactory.getInstance("X.509");
-		Certificate cert = cf.generateCertificate(is);
-		return convertCertificate(cert);
+		CertificateReader reader = new CertificateReader(path);
+
+		try {
+			X509Certificate cert = reader.read();
+
+			if (cert == null) {
+				throw new CertificateException("No certificate found in " + path);
+			}
+
+			return cert;
+		} finally {
+			reader.close();
+		}
 	}
 
 	/**
@@ -516,22 +832,18 @@ public class CertificateUtil {
 	 * @throws IOException
 	 * @throws KeyStoreException
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static X509Certificate[] readX509Certificates(String path) throws CertificateException, IOException, KeyStoreException {
-		FileInputStream is = new FileInputStream(new File(path));
-		CertificateFactory cf = CertificateFactory.getInstance("X.509");
-		
-		Collection c = cf.generateCertificates(is);
+		CertificateReader reader = new CertificateReader(path);
+		List<X509Certificate> chain = new ArrayList<X509Certificate>();
 
-		X509Certificate[] chain = new X509Certificate[c.size()];
-		Iterator<Certificate> i = c.iterator();
-		
-		int cnt = 0;
-
-		while (i.hasNext()) {
-			chain[cnt++] = convertCertificate((Certificate) i.next());
+		try {
+			for (X509Certificate cert = reader.read(); cert != null; cert = reader.read()) {
+				chain.add(cert);
+			}
+		} finally {
+			reader.close();
 		}
 
-		return chain;
+		return chain.toArray(new X509Certificate[chain.size()]);
 	}
 }
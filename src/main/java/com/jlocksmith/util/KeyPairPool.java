@@ -0,0 +1,380 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Key Pair Pool. Key pairs are generated ahead of time per algorithm and key
+ * size on low priority background threads, so a key pair entry can be created
+ * without waiting for the generator. Every pair is handed out once and the
+ * pool is refilled after each take. A size is pooled from its first request
+ * or when it is prefilled.
+ * 
+ * @author Derek Helbert
+ */
+public class KeyPairPool {
+
+	/** Default Number Of Pairs Kept Per Algorithm And Size */
+	public static final int DEFAULT_DEPTH = 2;
+
+	/** Pool */
+	private static KeyPairPool pool;
+
+	/** Queues By Algorithm And Size */
+	private Map<String, Queue> queues = new TreeMap<String, Queue>();
+
+	/** Number Of Pairs Kept Per Algorithm And Size */
+	private volatile int depth;
+
+	/** Hits */
+	private AtomicLong hits = new AtomicLong();
+
+	/** Misses */
+	private AtomicLong misses = new AtomicLong();
+
+	/** Generated In The Background */
+	private AtomicLong generated = new AtomicLong();
+
+	/** Background Generators */
+	private ExecutorService executor;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param depth Number Of Pairs Kept Per Algorithm And Size
+	 * @param threads Number Of Generator Threads
+	 */
+	public KeyPairPool(int depth, int threads) {
+		this.depth = Math.max(0, depth);
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "jlocksmith-keypool");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * Get Instance
+	 * 
+	 * @return KeyPairPool
+	 */
+	public static synchronized KeyPairPool getInstance() {
+		if (pool == null) {
+			pool = new KeyPairPool(DEFAULT_DEPTH, Math.max(1, Runtime
+					.getRuntime().availableProcessors() / 2));
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Take Key Pair. A pooled pair is returned if one is ready, otherwise a
+	 * new pair is generated on the calling thread.
+	 * 
+	 * @param alg Key Algorithm
+	 * @param size Key Size
+	 * 
+	 * @return KeyPair
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 */
+	public KeyPair take(String alg, int size) throws NoSuchAlgorithmException {
+		Queue queue = getQueue(alg, size);
+		KeyPair keyPair = queue.pairs.poll();
+
+		if (keyPair != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			keyPair = KeyUtil.getKeyPair(alg, size);
+		}
+
+		refill(queue);
+
+		return keyPair;
+	}
+
+	/**
+	 * Prefill Pool For Algorithm And Size
+	 * 
+	 * @param alg Key Algorithm
+	 * @param size Key Size
+	 */
+	public void prefill(String alg, int size) {
+		refill(getQueue(alg, size));
+	}
+
+	/**
+	 * Set Number Of Pairs Kept Per Algorithm And Size. Pools over the new
+	 * depth are trimmed, pools under it are refilled.
+	 * 
+	 * @param depth Depth
+	 */
+	public void setDepth(int depth) {
+		this.depth = Math.max(0, depth);
+
+		List<Queue> list;
+
+		synchronized (queues) {
+			list = new ArrayList<Queue>(queues.values());
+		}
+
+		for (int i = 0; i < list.size(); i++) {
+			Queue queue = list.get(i);
+
+			while (queue.pairs.size() > this.depth) {
+				if (queue.pairs.poll() == null) {
+					break;
+				}
+			}
+
+			refill(queue);
+		}
+	}
+
+	/**
+	 * Get Number Of Pairs Kept Per Algorithm And Size
+	 * 
+	 * @return int
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Get Number Of Ready Pairs
+	 * 
+	 * @param alg Key Algorithm
+	 * @param size Key Size
+	 * 
+	 * @return int
+	 */
+	public int getAvailable(String alg, int size) {
+		Queue queue;
+
+		synchronized (queues) {
+			queue = queues.get(getKey(alg, size));
+		}
+
+		return queue == null ? 0 : queue.pairs.size();
+	}
+
+	/**
+	 * Get Fill Levels, Ready Pairs By "Algorithm-Size"
+	 * 
+	 * @return Map
+	 */
+	public Map<String, Integer> getFillLevels() {
+		Map<String, Integer> levels = new TreeMap<String, Integer>();
+
+		synchronized (queues) {
+			for (Map.Entry<String, Queue> entry : queues.entrySet()) {
+				levels.put(entry.getKey(), Integer.valueOf(entry.getValue().pairs
+						.size()));
+			}
+		}
+
+		return levels;
+	}
+
+	/**
+	 * Get Takes Served From The Pool
+	 * 
+	 * @return long
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get Takes Generated On The Calling Thread
+	 * 
+	 * @return long
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Get Pairs Generated In The Background
+	 * 
+	 * @return long
+	 */
+	public long getGenerated() {
+		return generated.get();
+	}
+
+	/**
+	 * Clear Ready Pairs And Counters
+	 * 
+	 */
+	public void clear() {
+		synchronized (queues) {
+			for (Queue queue : queues.values()) {
+				queue.pairs.clear();
+			}
+		}
+
+		hits.set(0);
+		misses.set(0);
+		generated.set(0);
+	}
+
+	/**
+	 * Shutdown Background Generators
+	 * 
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * To String
+	 * 
+	 * @return String
+	 */
+	public String toString() {
+		return "depth=" + depth + " levels=" + getFillLevels() + " hits="
+				+ hits.get() + " misses=" + misses.get() + " generated="
+				+ generated.get();
+	}
+
+	/**
+	 * Get Queue, Created On First Use
+	 * 
+	 * @param alg Key Algorithm
+	 * @param size Key Size
+	 * 
+	 * @return Queue
+	 */
+	private Queue getQueue(String alg, int size) {
+		String key = getKey(alg, size);
+
+		synchronized (queues) {
+			Queue queue = queues.get(key);
+
+			if (queue == null) {
+				queue = new Queue(alg, size);
+				queues.put(key, queue);
+			}
+
+			return queue;
+		}
+	}
+
+	/**
+	 * Schedule Generation Up To The Depth
+	 * 
+	 * @param queue Queue
+	 */
+	private void refill(final Queue queue) {
+		synchronized (queue) {
+			while (queue.pairs.size() + queue.pending.get() < depth) {
+				queue.pending.incrementAndGet();
+
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							try {
+								if (queue.pairs.size() >= depth) {
+									return;
+								}
+
+								KeyPair keyPair = KeyUtil.getKeyPair(
+										queue.alg, queue.size);
+								generated.incrementAndGet();
+
+								// Depth may have been lowered meanwhile
+								if (queue.pairs.size() < depth) {
+									queue.pairs.offer(keyPair);
+								}
+							} catch (Exception err) {
+								err.printStackTrace();
+							} finally {
+								queue.pending.decrementAndGet();
+							}
+						}
+					});
+				} catch (RuntimeException err) {
+					// Shut down
+					queue.pending.decrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get Key
+	 * 
+	 * @param alg Key Algorithm
+	 * @param size Key Size
+	 * 
+	 * @return String
+	 */
+	private static String getKey(String alg, int size) {
+		return alg.toUpperCase() + "-" + size;
+	}
+
+	/**
+	 * Ready Pairs Of One Algorithm And Size
+	 * 
+	 */
+	private static class Queue {
+
+		/** Key Algorithm */
+		final String alg;
+
+		/** Key Size */
+		final int size;
+
+		/** Ready Pairs */
+		final BlockingQueue<KeyPair> pairs = new LinkedBlockingQueue<KeyPair>();
+
+		/** Scheduled Generations */
+		final AtomicInteger pending = new AtomicInteger();
+
+		/**
+		 * Constructor
+		 * 
+		 * @param alg
+		 * @param size
+		 */
+		Queue(String alg, int size) {
+			this.alg = alg;
+			this.size = size;
+		}
+	}
+}
@@ -18,9 +18,12 @@
 package com.jlocksmith.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import java.security.spec.ECGenParameterSpec;
 import java.util.Enumeration;
 import java.util.*;
 
@@ -37,8 +40,31 @@ public class KeyUtil {
 	/** RSA */
 	public static String RSA = "RSA";
 
-	/** Algorithms */
-	private static String[] KEY_ALGORITHMS = { DSA, RSA };
+	/** Elliptic Curve, NIST P-256 Or P-384 */
+	public static String EC = "EC";
+
+	/** Ed25519 */
+	public static String ED25519 = "Ed25519";
+
+	/** DSA And RSA Key Sizes */
+	private static int[] DSA_RSA_SIZES = { 512, 576, 640, 704, 768, 832, 896,
+			960, 1024 };
+
+	/** EC Key Sizes */
+	private static int[] EC_SIZES = { 256, 384 };
+
+	/** Ed25519 Key Sizes */
+	private static int[] ED25519_SIZES = { 255 };
+
+	/** Algorithms Available At Runtime */
+	private static String[] KEY_ALGORITHMS = available(new String[] { DSA,
+			RSA, EC, ED25519 });
+
+	/** Minimum Load Buffer Size */
+	private static final int MIN_BUFFER_SIZE = 8192;
+
+	/** Load Buffer Per Thread */
+	private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>();
 
 	/**
 	 * Get Algorithms
@@ -70,10 +96,109 @@ public class KeyUtil {
 	public static KeyPair getKeyPair(String alg, int size)
 			throws NoSuchAlgorithmException {
 		KeyPairGenerator keyGen = KeyPairGenerator.getInstance(alg);
-		keyGen.initialize(size);
+
+		if (isEc(alg)) {
+			// Named curves so certificates carry the curve OID
+			try {
+				keyGen.initialize(new ECGenParameterSpec(size == 384 ? "secp384r1"
+						: size == 256 ? "secp256r1" : "secp" + size + "r1"));
+			} catch (InvalidAlgorithmParameterException err) {
+				throw new NoSuchAlgorithmException("Unsupported EC key size "
+						+ size);
+			}
+		} else if (!isEdDsa(alg)) {
+			keyGen.initialize(size);
+		}
+
 		return keyGen.genKeyPair();
 	}
 
+	/**
+	 * Get Key Sizes
+	 * 
+	 * @param alg Key Algorithm
+	 * 
+	 * @return int[] In Ascending Order
+	 */
+	public static int[] getKeySizes(String alg) {
+		if (isEc(alg)) {
+			return EC_SIZES.clone();
+		} else if (isEdDsa(alg)) {
+			return ED25519_SIZES.clone();
+		}
+
+		return DSA_RSA_SIZES.clone();
+	}
+
+	/**
+	 * Get Default Key Size
+	 * 
+	 * @param alg Key Algorithm
+	 * 
+	 * @return int
+	 */
+	public static int getDefaultKeySize(String alg) {
+		int[] sizes = getKeySizes(alg);
+		return isEc(alg) ? sizes[0] : sizes[sizes.length - 1];
+	}
+
+	/**
+	 * Is Elliptic Curve Key Algorithm
+	 * 
+	 * @param alg Key Algorithm, e.g. of Key.getAlgorithm()
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isEc(String alg) {
+		return EC.equalsIgnoreCase(alg) || "ECDSA".equalsIgnoreCase(alg);
+	}
+
+	/**
+	 * Is EdDSA Key Algorithm
+	 * 
+	 * @param alg Key Algorithm, e.g. of Key.getAlgorithm()
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isEdDsa(String alg) {
+		return ED25519.equalsIgnoreCase(alg) || "EdDSA".equalsIgnoreCase(alg);
+	}
+
+	/**
+	 * Is Key Algorithm Available At Runtime
+	 * 
+	 * @param alg Key Algorithm
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isAvailable(String alg) {
+		try {
+			KeyPairGenerator.getInstance(alg);
+			return true;
+		} catch (NoSuchAlgorithmException err) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get Key Algorithms Available At Runtime
+	 * 
+	 * @param algs Key Algorithms
+	 * 
+	 * @return String[]
+	 */
+	private static String[] available(String[] algs) {
+		List<String> list = new ArrayList<String>(algs.length);
+
+		for (int i = 0; i < algs.length; i++) {
+			if (isAvailable(algs[i])) {
+				list.add(algs[i]);
+			}
+		}
+
+		return list.toArray(new String[list.size()]);
+	}
+
 	/**
 	 * Get Key Store
 	 * 
@@ -88,8 +213,7 @@ public class KeyUtil {
 			throws KeyStoreException, IOException, CertificateException,
 			NoSuchAlgorithmException {
 		KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-		keyStore.load(new FileInputStream(new File(path)), password
-				.toCharArray());
+		loadKeyStore(keyStore, path, password);
 		return keyStore;
 	}
 
@@ -114,11 +238,75 @@ public class KeyUtil {
 			CertificateException, NoSuchAlgorithmException,
 			NoSuchProviderException {
 		KeyStore keyStore = KeyStore.getInstance(type, prov);
-		keyStore.load(new FileInputStream(new File(path)), password
-				.toCharArray());
+		loadKeyStore(keyStore, path, password);
 		return keyStore;
 	}
 
+	/**
+	 * Load Key Store From File. The file is read with one sequential channel
+	 * read into a buffer kept per thread and closed before the key store
+	 * parses the buffer, the buffer is cleared afterwards.
+	 * 
+	 * @param keyStore Key Store
+	 * @param path File Path
+	 * @param password Password
+	 * 
+	 * @throws IOException
+	 * @throws CertificateException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static void loadKeyStore(KeyStore keyStore, String path,
+			String password) throws IOException, CertificateException,
+			NoSuchAlgorithmException {
+		ByteBuffer buffer;
+		FileInputStream fis = new FileInputStream(new File(path));
+
+		try {
+			FileChannel channel = fis.getChannel();
+			long size = channel.size();
+
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Key store file too large: " + path);
+			}
+
+			buffer = getBuffer((int) size);
+
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// Fill buffer
+			}
+		} finally {
+			fis.close();
+		}
+
+		try {
+			keyStore.load(new ByteArrayInputStream(buffer.array(), 0, buffer
+					.position()), password.toCharArray());
+		} finally {
+			Arrays.fill(buffer.array(), 0, buffer.position(), (byte) 0);
+		}
+	}
+
+	/**
+	 * Get Load Buffer Of Current Thread
+	 * 
+	 * @param size Size Needed
+	 * 
+	 * @return ByteBuffer
+	 */
+	private static ByteBuffer getBuffer(int size) {
+		ByteBuffer buffer = BUFFER.get();
+
+		if (buffer == null || buffer.capacity() < size) {
+			buffer = ByteBuffer.allocate(Math.max(size, MIN_BUFFER_SIZE));
+			BUFFER.set(buffer);
+		}
+
+		buffer.clear();
+		buffer.limit(size);
+
+		return buffer;
+	}
+
 	/**
 	 * Store Key Store
 	 * 
@@ -133,9 +321,87 @@ public class KeyUtil {
 	 * @throws CertificateException
 	 */
 	public static void storeKeyStore(KeyStore ks, String path , String password) throws NoSuchAlgorithmException, FileNotFoundException, KeyStoreException, IOException, CertificateException    {
-		FileOutputStream fos = new FileOutputStream(new File(path));
-		ks.store(fos,password.toCharArray());
-		fos.close();
+		writeAtomically(path, serializeKeyStore(ks, password));
+	}
+
+	/**
+	 * Serialize Key Store Into Memory
+	 * 
+	 * @param ks Key Store
+	 * @param password Password
+	 * 
+	 * @return byte[]
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IOException
+	 * @throws NoSuchAlgorithmException
+	 * @throws CertificateException
+	 */
+	public static byte[] serializeKeyStore(KeyStore ks, String password)
+			throws KeyStoreException, IOException, NoSuchAlgorithmException,
+			CertificateException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(8192);
+		ks.store(bos, password.toCharArray());
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Write File Atomically. The data is written to a temporary file in the
+	 * same directory, synced to disk and renamed over the target, so the
+	 * target holds either the old or the new content. The target is never
+	 * deleted, on platforms that do not replace an existing file on rename it
+	 * is moved to a .bak file first and moved back if the new file can not
+	 * take its place.
+	 * 
+	 * @param path File Path
+	 * @param data Data
+	 * 
+	 * @throws IOException
+	 */
+	public static void writeAtomically(String path, byte[] data)
+			throws IOException {
+		File target = new File(path).getAbsoluteFile();
+		File temp = File.createTempFile("." + target.getName() + ".", ".tmp", target
+				.getParentFile());
+		boolean keep = false;
+
+		try {
+			FileOutputStream fos = new FileOutputStream(temp);
+
+			try {
+				fos.write(data);
+				fos.getFD().sync();
+			} finally {
+				fos.close();
+			}
+
+			if (temp.renameTo(target)) {
+				return;
+			}
+
+			File backup = new File(target.getPath() + ".bak");
+
+			// A stale backup is only removed while the target is in place
+			if (!target.exists() || (backup.exists() && !backup.delete())
+					|| !target.renameTo(backup)) {
+				keep = true;
+				throw new IOException("Unable to replace " + target
+						+ ", new content kept in " + temp);
+			}
+
+			if (!temp.renameTo(target)) {
+				keep = true;
+				backup.renameTo(target);
+				throw new IOException("Unable to replace " + target
+						+ ", new content kept in " + temp);
+			}
+
+			backup.delete();
+		} finally {
+			if (!keep && temp.exists()) {
+				temp.delete();
+			}
+		}
 	}
 	
 	/**
@@ -0,0 +1,367 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Monotonic Serial Number Generator. Serial numbers of an issuer only ever
+ * increase within a program and across its restarts, and are never handed
+ * out twice, also across programs sharing the counter file. Numbers are
+ * reserved from the file in blocks, so the file is written once per block
+ * rather than per certificate and concurrent callers only synchronize when a
+ * block runs out. Programs sharing the file each use their own blocks, so
+ * the serials they issue for one issuer interleave rather than increase
+ * together.
+ * <p>
+ * An issuer is given its own counter in the file once it used up its first
+ * block. Until then its blocks come from a shared counter, which reserves
+ * the blocks of many new issuers in one write, so issuing self-signed
+ * certificates for many subjects does not rewrite the file per subject.
+ * Each write takes a lock on a lock file next to the counter file and reads
+ * the counters again first, so no reservation of another program is lost.
+ * Numbers of a block not used before the program ends are skipped, never
+ * reused.
+ * 
+ * @author Derek Helbert
+ */
+public class MonotonicSerialNumberGenerator implements SerialNumberGenerator {
+
+	/** Default Block Size */
+	public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+	/** Shared Blocks Reserved Per File Write */
+	private static final int SHARED_BLOCKS = 64;
+
+	/** Key Of The Shared Counter, Never A Canonical Name */
+	private static final String SHARED = "*";
+
+	/** Monitors By Lock File, File Locks Are Held Per Program Not Per Thread */
+	private static final Map<String, Object> MONITORS = new HashMap<String, Object>();
+
+	/** File */
+	private final File file;
+
+	/** Lock File */
+	private final File lockFile;
+
+	/** Monitor Of The Lock File Shared By Generators Of This Program */
+	private final Object monitor;
+
+	/** Block Size */
+	private final int blockSize;
+
+	/** Reserved Limits By Canonical Issuer Name, As Last Read Or Written */
+	private final Properties limits = new Properties();
+
+	/** Counters By Canonical Issuer Name */
+	private final Map<String, Counter> counters = new HashMap<String, Counter>();
+
+	/** Next Shared Block, Guarded By limits */
+	private long sharedNext = 0;
+
+	/** First Number Not Reserved For Shared Blocks, Guarded By limits */
+	private long sharedLimit = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file Counter File, created when the first block is reserved
+	 * 
+	 * @throws IOException
+	 */
+	public MonotonicSerialNumberGenerator(File file) throws IOException {
+		this(file, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file Counter File, created when the first block is reserved
+	 * @param blockSize Numbers Reserved Per File Write
+	 * 
+	 * @throws IOException
+	 */
+	public MonotonicSerialNumberGenerator(File file, int blockSize)
+			throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.lockFile = new File(this.file.getPath() + ".lock");
+
+		synchronized (MONITORS) {
+			Object m = MONITORS.get(lockFile.getPath());
+
+			if (m == null) {
+				m = new Object();
+				MONITORS.put(lockFile.getPath(), m);
+			}
+
+			this.monitor = m;
+		}
+		this.blockSize = Math.max(1, blockSize);
+
+		synchronized (limits) {
+			load();
+		}
+	}
+
+	/**
+	 * Generate Serial Number
+	 * 
+	 * @param issuer Issuer
+	 * 
+	 * @return BigInteger
+	 * 
+	 * @throws IOException
+	 */
+	public BigInteger generate(X500Principal issuer) throws IOException {
+		Counter counter = getCounter(issuer.getName(X500Principal.CANONICAL));
+
+		while (true) {
+			Block block = counter.block;
+
+			if (block != null) {
+				long serial = block.next.getAndIncrement();
+
+				if (serial < block.limit) {
+					return BigInteger.valueOf(serial);
+				}
+			}
+
+			synchronized (counter) {
+				if (counter.block == block) {
+					counter.block = reserve(counter.name, block);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get Counter
+	 * 
+	 * @param name Canonical Issuer Name
+	 * 
+	 * @return Counter
+	 */
+	private Counter getCounter(String name) {
+		synchronized (counters) {
+			Counter counter = counters.get(name);
+
+			if (counter == null) {
+				counter = new Counter(name);
+				counters.put(name, counter);
+			}
+
+			return counter;
+		}
+	}
+
+	/**
+	 * Reserve Next Block Of An Issuer. The first block of an issuer without
+	 * a counter in the file is taken from the shared counter, later blocks
+	 * continue the counter of the issuer, which starts above every shared
+	 * block reserved so far.
+	 * 
+	 * @param name Canonical Issuer Name
+	 * @param current Used Up Block or null
+	 * 
+	 * @return Block
+	 * 
+	 * @throws IOException
+	 */
+	private Block reserve(String name, Block current) throws IOException {
+		synchronized (limits) {
+			if (current == null && limits.getProperty(name) == null
+					&& sharedNext < sharedLimit) {
+				return takeShared();
+			}
+
+			synchronized (monitor) {
+				RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+
+				try {
+					FileLock fileLock = raf.getChannel().lock();
+
+					try {
+						return reserveLocked(name, current);
+					} finally {
+						fileLock.release();
+					}
+				} finally {
+					raf.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reserve Next Block Holding The Lock File
+	 * 
+	 * @param name Canonical Issuer Name
+	 * @param current Used Up Block or null
+	 * 
+	 * @return Block
+	 * 
+	 * @throws IOException
+	 */
+	private Block reserveLocked(String name, Block current) throws IOException {
+		load();
+
+		if (current == null && limits.getProperty(name) == null) {
+			long start = getLimit(SHARED);
+			long end = start + (long) blockSize * SHARED_BLOCKS;
+
+			limits.setProperty(SHARED, String.valueOf(end));
+			store();
+
+			sharedNext = start;
+			sharedLimit = end;
+
+			return takeShared();
+		}
+
+		long start = getLimit(limits.getProperty(name) != null ? name : SHARED);
+
+		if (current != null) {
+			start = Math.max(start, current.limit);
+		}
+
+		long end = start + blockSize;
+
+		limits.setProperty(name, String.valueOf(end));
+		store();
+
+		return new Block(start, end);
+	}
+
+	/**
+	 * Take Block From The Reserved Shared Blocks
+	 * 
+	 * @return Block
+	 */
+	private Block takeShared() {
+		Block block = new Block(sharedNext, sharedNext + blockSize);
+		sharedNext += blockSize;
+		return block;
+	}
+
+	/**
+	 * Get Stored Limit
+	 * 
+	 * @param name Canonical Issuer Name or SHARED
+	 * 
+	 * @return long
+	 */
+	private long getLimit(String name) {
+		return Long.parseLong(limits.getProperty(name, "1"));
+	}
+
+	/**
+	 * Read Limits From The File
+	 * 
+	 * @throws IOException
+	 */
+	private void load() throws IOException {
+		limits.clear();
+
+		if (file.exists()) {
+			FileInputStream fis = new FileInputStream(file);
+
+			try {
+				limits.load(fis);
+			} finally {
+				fis.close();
+			}
+		}
+	}
+
+	/**
+	 * Write Limits To The File. The file is replaced atomically, on failure
+	 * the limits are read again so they match the file.
+	 * 
+	 * @throws IOException
+	 */
+	private void store() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		limits.store(bos, "jLocksmith serial numbers");
+
+		try {
+			KeyUtil.writeAtomically(file.getPath(), bos.toByteArray());
+		} catch (IOException err) {
+			load();
+			throw err;
+		}
+	}
+
+	/**
+	 * Counter Of One Issuer
+	 * 
+	 */
+	private static class Counter {
+
+		/** Canonical Issuer Name */
+		final String name;
+
+		/** Current Block, Replaced While Holding The Counter */
+		volatile Block block = null;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param name
+		 */
+		Counter(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Reserved Block Of Serial Numbers
+	 * 
+	 */
+	private static class Block {
+
+		/** Next Serial Number */
+		final AtomicLong next;
+
+		/** First Serial Number Not Reserved */
+		final long limit;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param start
+		 * @param limit
+		 */
+		Block(long start, long limit) {
+			this.next = new AtomicLong(start);
+			this.limit = limit;
+		}
+	}
+}
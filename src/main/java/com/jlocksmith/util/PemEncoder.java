@@ -0,0 +1,152 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PEM Encoder. Writes Base64 encoded objects between PEM markers straight
+ * into a byte buffer, with lines of 64 characters as required by RFC 7468,
+ * so a caller can reuse one buffer for any number of objects.
+ * 
+ * @author Derek Helbert
+ */
+public class PemEncoder {
+
+	/** Certificate Type */
+	public static final String CERTIFICATE = "CERTIFICATE";
+
+	/** Characters Per Line */
+	public static final int LINE_LENGTH = 64;
+
+	/** Bytes Per Line */
+	private static final int LINE_BYTES = LINE_LENGTH / 4 * 3;
+
+	/** Base64 Alphabet */
+	private static final byte[] ALPHABET = ("ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+			+ "abcdefghijklmnopqrstuvwxyz0123456789+/").getBytes();
+
+	/** Pad Character */
+	private static final byte PAD = '=';
+
+	/** Line Separator */
+	private static final byte NEWLINE = '\n';
+
+	/**
+	 * Private Constructor
+	 * 
+	 */
+	private PemEncoder() {
+	}
+
+	/**
+	 * Get Encoded Length
+	 * 
+	 * @param type PEM Type, e.g. CERTIFICATE
+	 * @param length Number Of Bytes To Encode
+	 * 
+	 * @return int
+	 */
+	public static int getEncodedLength(String type, int length) {
+		int chars = (length + 2) / 3 * 4;
+		int lines = (chars + LINE_LENGTH - 1) / LINE_LENGTH;
+
+		// Markers are "-----BEGIN " + type + "-----\n" and "-----END " ...
+		return chars + lines + 2 * type.length() + 32;
+	}
+
+	/**
+	 * Encode Object
+	 * 
+	 * @param type PEM Type, e.g. CERTIFICATE
+	 * @param data Encoded Object
+	 * @param out Output Buffer with at least getEncodedLength bytes remaining
+	 */
+	public static void encode(String type, byte[] data, ByteBuffer out) {
+		marker(out, "-----BEGIN ", type);
+
+		for (int off = 0; off < data.length; off += LINE_BYTES) {
+			encodeLine(data, off, Math.min(LINE_BYTES, data.length - off), out);
+			out.put(NEWLINE);
+		}
+
+		marker(out, "-----END ", type);
+	}
+
+	/**
+	 * Encode One Line
+	 * 
+	 * @param data Data
+	 * @param off Offset
+	 * @param len Length
+	 * @param out Output Buffer
+	 */
+	private static void encodeLine(byte[] data, int off, int len, ByteBuffer out) {
+		int end = off + len;
+		int i = off;
+
+		for (; i + 3 <= end; i += 3) {
+			int n = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8
+					| (data[i + 2] & 0xff);
+			out.put(ALPHABET[n >>> 18]);
+			out.put(ALPHABET[(n >>> 12) & 0x3f]);
+			out.put(ALPHABET[(n >>> 6) & 0x3f]);
+			out.put(ALPHABET[n & 0x3f]);
+		}
+
+		if (end - i == 1) {
+			int n = (data[i] & 0xff) << 16;
+			out.put(ALPHABET[n >>> 18]);
+			out.put(ALPHABET[(n >>> 12) & 0x3f]);
+			out.put(PAD);
+			out.put(PAD);
+		} else if (end - i == 2) {
+			int n = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8;
+			out.put(ALPHABET[n >>> 18]);
+			out.put(ALPHABET[(n >>> 12) & 0x3f]);
+			out.put(ALPHABET[(n >>> 6) & 0x3f]);
+			out.put(PAD);
+		}
+	}
+
+	/**
+	 * Write Marker Line
+	 * 
+	 * @param out Output Buffer
+	 * @param prefix Marker Prefix
+	 * @param type PEM Type
+	 */
+	private static void marker(ByteBuffer out, String prefix, String type) {
+		ascii(out, prefix);
+		ascii(out, type);
+		ascii(out, "-----");
+		out.put(NEWLINE);
+	}
+
+	/**
+	 * Write ASCII String
+	 * 
+	 * @param out Output Buffer
+	 * @param s String
+	 */
+	private static void ascii(ByteBuffer out, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			out.put((byte) s.charAt(i));
+		}
+	}
+}
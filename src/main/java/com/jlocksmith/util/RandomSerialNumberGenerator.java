@@ -0,0 +1,102 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Random Serial Number Generator. Serial numbers are drawn from a secure
+ * random generator per thread, so parallel certificate generation does not
+ * contend on one generator. With the default of 127 bits the chance of two
+ * equal serial numbers is negligible.
+ * 
+ * @author Derek Helbert
+ */
+public class RandomSerialNumberGenerator implements SerialNumberGenerator {
+
+	/** Default Number Of Random Bits */
+	public static final int DEFAULT_BITS = 127;
+
+	/** Minimum Number Of Random Bits */
+	public static final int MIN_BITS = 64;
+
+	/** Maximum Number Of Random Bits, 20 octets positive */
+	public static final int MAX_BITS = 159;
+
+	/** Number Of Random Bits */
+	private final int bits;
+
+	/** Secure Random Per Thread */
+	private final ThreadLocal<SecureRandom> random = new ThreadLocal<SecureRandom>() {
+		protected SecureRandom initialValue() {
+			return new SecureRandom();
+		}
+	};
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public RandomSerialNumberGenerator() {
+		this(DEFAULT_BITS);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param bits Number Of Random Bits, 64 to 159
+	 */
+	public RandomSerialNumberGenerator(int bits) {
+		if (bits < MIN_BITS || bits > MAX_BITS) {
+			throw new IllegalArgumentException("Serial number bits must be "
+					+ MIN_BITS + " to " + MAX_BITS);
+		}
+
+		this.bits = bits;
+	}
+
+	/**
+	 * Generate Serial Number
+	 * 
+	 * @param issuer Issuer, not used
+	 * 
+	 * @return BigInteger
+	 */
+	public BigInteger generate(X500Principal issuer) {
+		SecureRandom r = random.get();
+		BigInteger serial;
+
+		do {
+			serial = new BigInteger(bits, r);
+		} while (serial.signum() == 0);
+
+		return serial;
+	}
+
+	/**
+	 * Get Number Of Random Bits
+	 * 
+	 * @return int
+	 */
+	public int getBits() {
+		return bits;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * X.509 Serial Number Generator. Implementations must be safe to call from
+ * several threads at once.
+ * 
+ * @author Derek Helbert
+ */
+public interface SerialNumberGenerator {
+
+	/**
+	 * Generate Serial Number
+	 * 
+	 * @param issuer Issuer Of The Certificate
+	 * 
+	 * @return BigInteger Positive Serial Number Of At Most 20 Octets
+	 * 
+	 * @throws IOException If generator state can not be persisted
+	 */
+	public BigInteger generate(X500Principal issuer) throws IOException;
+}
@@ -17,6 +17,13 @@
  */
 package com.jlocksmith.util;
 
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * SignatureUtil
  * 
@@ -51,6 +58,21 @@ public class SignatureUtil {
 	/** RIPEMD160 with RSA Signature Type */
 	public static String RSA_RIPEMD160 = "RIPEMD160withRSA";
 
+	/** SHA-256 with ECDSA Signature Type */
+	public static String ECDSA_SHA256 = "SHA256withECDSA";
+
+	/** SHA-384 with ECDSA Signature Type */
+	public static String ECDSA_SHA384 = "SHA384withECDSA";
+
+	/** Ed25519 Signature Type */
+	public static String ED25519 = "Ed25519";
+
+	/** PKCS #1 Signature OID Prefix, RSA signatures with NULL parameters */
+	public static final String PKCS1_OID_PREFIX = "1.2.840.113549.1.1.";
+
+	/** TeleTrusT RSA Signature OID Prefix */
+	public static final String TELETRUST_RSA_OID_PREFIX = "1.3.36.3.3.1.";
+
 	/** RSA Signature Types */
 	private static String[] RSA_SIGNATURE_TYPES = { RSA_MD2, RSA_MD5, RSA_SHA1,
 			RSA_SHA224, RSA_SHA224, RSA_SHA256, RSA_SHA384, RSA_SHA512,
@@ -59,6 +81,36 @@ public class SignatureUtil {
 	/** DSA Signature Types */
 	private static String[] DSA_SIGNATURE_TYPES = { DSA_SHA1 };
 
+	/** EC Signature Types Available At Runtime */
+	private static String[] EC_SIGNATURE_TYPES = available(new String[] {
+			ECDSA_SHA256, ECDSA_SHA384 });
+
+	/** EdDSA Signature Types Available At Runtime */
+	private static String[] ED_SIGNATURE_TYPES = available(new String[] { ED25519 });
+
+	/** Signature OIDs By Upper Case Signature Type */
+	private static Map<String, String> OIDS = new HashMap<String, String>();
+
+	static {
+		OIDS.put(RSA_MD2.toUpperCase(), PKCS1_OID_PREFIX + "2");
+		OIDS.put(RSA_MD5.toUpperCase(), PKCS1_OID_PREFIX + "4");
+		OIDS.put(RSA_SHA1.toUpperCase(), PKCS1_OID_PREFIX + "5");
+		OIDS.put(RSA_SHA256.toUpperCase(), PKCS1_OID_PREFIX + "11");
+		OIDS.put(RSA_SHA384.toUpperCase(), PKCS1_OID_PREFIX + "12");
+		OIDS.put(RSA_SHA512.toUpperCase(), PKCS1_OID_PREFIX + "13");
+		OIDS.put(RSA_SHA224.toUpperCase(), PKCS1_OID_PREFIX + "14");
+		OIDS.put(RSA_RIPEMD160.toUpperCase(), TELETRUST_RSA_OID_PREFIX + "2");
+		OIDS.put(DSA_SHA1.toUpperCase(), "1.2.840.10040.4.3");
+		OIDS.put("SHA224WITHDSA", "2.16.840.1.101.3.4.3.1");
+		OIDS.put("SHA256WITHDSA", "2.16.840.1.101.3.4.3.2");
+		OIDS.put("SHA1WITHECDSA", "1.2.840.10045.4.1");
+		OIDS.put("SHA224WITHECDSA", "1.2.840.10045.4.3.1");
+		OIDS.put(ECDSA_SHA256.toUpperCase(), "1.2.840.10045.4.3.2");
+		OIDS.put(ECDSA_SHA384.toUpperCase(), "1.2.840.10045.4.3.3");
+		OIDS.put("SHA512WITHECDSA", "1.2.840.10045.4.3.4");
+		OIDS.put(ED25519.toUpperCase(), "1.3.101.112");
+	}
+
 	/**
 	 * Get RSA Signature Types
 	 * 
@@ -76,4 +128,111 @@ public class SignatureUtil {
 	public static String[] getDsaSignatureTypes() {
 		return DSA_SIGNATURE_TYPES;
 	}
+
+	/**
+	 * Get EC Signature Types Available At Runtime
+	 * 
+	 * @return String[]
+	 */
+	public static String[] getEcSignatureTypes() {
+		return EC_SIGNATURE_TYPES;
+	}
+
+	/**
+	 * Get EdDSA Signature Types Available At Runtime
+	 * 
+	 * @return String[]
+	 */
+	public static String[] getEdSignatureTypes() {
+		return ED_SIGNATURE_TYPES;
+	}
+
+	/**
+	 * Get Signature Types For A Key Algorithm
+	 * 
+	 * @param keyAlgorithm Key Algorithm, e.g. of KeyUtil or Key.getAlgorithm()
+	 * 
+	 * @return String[]
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static String[] getSignatureTypes(String keyAlgorithm)
+			throws NoSuchAlgorithmException {
+		if (KeyUtil.DSA.equalsIgnoreCase(keyAlgorithm)) {
+			return DSA_SIGNATURE_TYPES;
+		} else if (KeyUtil.RSA.equalsIgnoreCase(keyAlgorithm)) {
+			return RSA_SIGNATURE_TYPES;
+		} else if (KeyUtil.isEc(keyAlgorithm)) {
+			return EC_SIGNATURE_TYPES;
+		} else if (KeyUtil.isEdDsa(keyAlgorithm)) {
+			return ED_SIGNATURE_TYPES;
+		}
+
+		throw new NoSuchAlgorithmException("Unsupported key algorithm "
+				+ keyAlgorithm);
+	}
+
+	/**
+	 * Get Default Signature Type For A Key Algorithm
+	 * 
+	 * @param keyAlgorithm Key Algorithm
+	 * 
+	 * @return String
+	 * 
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static String getDefaultSignatureType(String keyAlgorithm)
+			throws NoSuchAlgorithmException {
+		if (KeyUtil.RSA.equalsIgnoreCase(keyAlgorithm)) {
+			return RSA_SHA256;
+		}
+
+		String[] types = getSignatureTypes(keyAlgorithm);
+
+		if (types.length == 0) {
+			throw new NoSuchAlgorithmException("No signature type for "
+					+ keyAlgorithm);
+		}
+
+		return types[0];
+	}
+
+	/**
+	 * Get Signature OID
+	 * 
+	 * @param signatureType Signature Type Or OID
+	 * 
+	 * @return String or null if unknown
+	 */
+	public static String getSignatureOid(String signatureType) {
+		String oid = OIDS.get(signatureType.toUpperCase());
+
+		if (oid == null && OIDS.containsValue(signatureType)) {
+			oid = signatureType;
+		}
+
+		return oid;
+	}
+
+	/**
+	 * Get Signature Types Available At Runtime
+	 * 
+	 * @param types Signature Types
+	 * 
+	 * @return String[]
+	 */
+	private static String[] available(String[] types) {
+		List<String> list = new ArrayList<String>(types.length);
+
+		for (int i = 0; i < types.length; i++) {
+			try {
+				Signature.getInstance(types[i]);
+				list.add(types[i]);
+			} catch (NoSuchAlgorithmException err) {
+				// Not provided by this runtime
+			}
+		}
+
+		return list.toArray(new String[list.size()]);
+	}
 }
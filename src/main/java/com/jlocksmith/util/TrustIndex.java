@@ -0,0 +1,178 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Trust Anchor Index. Certificate entries are indexed by subject DN and by
+ * Subject Key Identifier so issuer candidates are found with one lookup per
+ * chain level.
+ * 
+ * @author Derek Helbert
+ */
+public class TrustIndex {
+
+	/** Certificates By Subject */
+	private Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<X500Principal, List<X509Certificate>>();
+
+	/** Certificates By Subject Key Identifier */
+	private Map<String, List<X509Certificate>> byKeyId = new HashMap<String, List<X509Certificate>>();
+
+	/** Size */
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 * 
+	 */
+	public TrustIndex() {
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param keyStores Key Stores
+	 * 
+	 * @throws KeyStoreException
+	 * @throws CertificateException
+	 */
+	public TrustIndex(KeyStore[] keyStores) throws KeyStoreException,
+			CertificateException {
+		for (int i = 0; i < keyStores.length; i++) {
+			add(keyStores[i]);
+		}
+	}
+
+	/**
+	 * Add All Certificate Entries
+	 * 
+	 * @param keyStore Key Store
+	 * 
+	 * @throws KeyStoreException
+	 * @throws CertificateException
+	 */
+	public void add(KeyStore keyStore) throws KeyStoreException,
+			CertificateException {
+		for (Enumeration<String> en = keyStore.aliases(); en.hasMoreElements();) {
+			String alias = en.nextElement();
+
+			if (keyStore.isCertificateEntry(alias)) {
+				add(CertificateUtil.convertCertificate(keyStore
+						.getCertificate(alias)));
+			}
+		}
+	}
+
+	/**
+	 * Add Certificate
+	 * 
+	 * @param cert Certificate
+	 */
+	public void add(X509Certificate cert) {
+		put(bySubject, cert.getSubjectX500Principal(), cert);
+
+		byte[] ski = CertificateUtil.getSubjectKeyIdentifier(cert);
+
+		if (ski != null) {
+			put(byKeyId, CertificateUtil.toHex(ski), cert);
+		}
+
+		size++;
+	}
+
+	/**
+	 * Find Issuer Candidates. Certificates whose Subject Key Identifier
+	 * matches the Authority Key Identifier are preferred, otherwise all
+	 * certificates with a matching subject DN are returned. Signatures are not
+	 * verified. The list can not be modified.
+	 * 
+	 * @param cert Certificate
+	 * 
+	 * @return List
+	 */
+	public List<X509Certificate> findIssuers(X509Certificate cert) {
+		X500Principal issuer = cert.getIssuerX500Principal();
+		byte[] aki = CertificateUtil.getAuthorityKeyIdentifier(cert);
+
+		if (aki != null) {
+			List<X509Certificate> keyed = byKeyId.get(CertificateUtil.toHex(aki));
+
+			if (keyed != null) {
+				List<X509Certificate> result = new ArrayList<X509Certificate>(keyed.size());
+
+				for (int i = 0; i < keyed.size(); i++) {
+					if (issuer.equals(keyed.get(i).getSubjectX500Principal())) {
+						result.add(keyed.get(i));
+					}
+				}
+
+				if (!result.isEmpty()) {
+					return result;
+				}
+			}
+		}
+
+		List<X509Certificate> named = bySubject.get(issuer);
+
+		if (named == null) {
+			return Collections.emptyList();
+		}
+
+		return Collections.unmodifiableList(named);
+	}
+
+	/**
+	 * Get Size
+	 * 
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Put In Multi Map
+	 * 
+	 * @param map Map
+	 * @param key Key
+	 * @param cert Certificate
+	 */
+	private static <K> void put(Map<K, List<X509Certificate>> map, K key,
+			X509Certificate cert) {
+		List<X509Certificate> list = map.get(key);
+
+		if (list == null) {
+			list = new ArrayList<X509Certificate>(1);
+			map.put(key, list);
+		}
+
+		list.add(cert);
+	}
+}
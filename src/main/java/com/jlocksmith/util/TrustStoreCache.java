@@ -0,0 +1,322 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Trust Store Cache. Keeps the parsed certificates and trust index of the
+ * configured CA certs key store. The file is only read again when its size or
+ * modification time changes, or when another path or password is requested.
+ * A changed file is read in the background while requests are answered from
+ * the current snapshot, only the first request for a store waits for it to
+ * be read.
+ * 
+ * @author Derek Helbert
+ */
+public class TrustStoreCache {
+
+	/** Cache */
+	private static TrustStoreCache cache;
+
+	/** Current Snapshot */
+	private volatile Snapshot snapshot = null;
+
+	/** Pending Background Load */
+	private Future<Snapshot> pending = null;
+
+	/** Background Loader */
+	private ExecutorService executor = Executors
+			.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "jlocksmith-truststore");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+
+	/**
+	 * Private Constructor
+	 * 
+	 */
+	private TrustStoreCache() {
+	}
+
+	/**
+	 * Get Instance
+	 * 
+	 * @return TrustStoreCache
+	 */
+	public static synchronized TrustStoreCache getInstance() {
+		if (cache == null) {
+			cache = new TrustStoreCache();
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Get Trust Index
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * 
+	 * @return TrustIndex
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IOException
+	 * @throws CertificateException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public TrustIndex getTrustIndex(String path, String password)
+			throws KeyStoreException, IOException, CertificateException,
+			NoSuchAlgorithmException {
+		return get(path, password).index;
+	}
+
+	/**
+	 * Get Certificates
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * 
+	 * @return X509Certificate[]
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IOException
+	 * @throws CertificateException
+	 * @throws NoSuchAlgorithmException
+	 */
+	public X509Certificate[] getCertificates(String path, String password)
+			throws KeyStoreException, IOException, CertificateException,
+			NoSuchAlgorithmException {
+		return get(path, password).certs.clone();
+	}
+
+	/**
+	 * Reload In Background
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 */
+	public synchronized void reload(final String path, final String password) {
+		pending = executor.submit(new Callable<Snapshot>() {
+			public Snapshot call() throws Exception {
+				Snapshot s = load(path, password);
+				snapshot = s;
+				return s;
+			}
+		});
+	}
+
+	/**
+	 * Clear Cache
+	 * 
+	 */
+	public synchronized void clear() {
+		snapshot = null;
+	}
+
+	/**
+	 * Get Snapshot. A snapshot of the store is returned right away, a reload
+	 * is scheduled when its file changed. Without a snapshot of the store
+	 * the pending background load is awaited, or the store is read now.
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * 
+	 * @return Snapshot
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IOException
+	 * @throws CertificateException
+	 * @throws NoSuchAlgorithmException
+	 */
+	private Snapshot get(String path, String password)
+			throws KeyStoreException, IOException, CertificateException,
+			NoSuchAlgorithmException {
+		Snapshot s = snapshot;
+
+		if (s != null && s.isFor(path, password)) {
+			if (!s.isCurrent(new File(path))) {
+				reloadIfIdle(path, password);
+			}
+
+			return s;
+		}
+
+		Future<Snapshot> f;
+
+		synchronized (this) {
+			f = pending;
+		}
+
+		if (f != null) {
+			try {
+				s = f.get();
+			} catch (Exception err) {
+				err.printStackTrace();
+			}
+
+			if (s != null && s.isFor(path, password)) {
+				return s;
+			}
+		}
+
+		s = load(path, password);
+		snapshot = s;
+
+		return s;
+	}
+
+	/**
+	 * Reload In Background Unless A Load Is Pending
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 */
+	private synchronized void reloadIfIdle(String path, String password) {
+		if (pending == null || pending.isDone()) {
+			reload(path, password);
+		}
+	}
+
+	/**
+	 * Load Snapshot
+	 * 
+	 * @param path File Path
+	 * @param password Password
+	 * 
+	 * @return Snapshot
+	 * 
+	 * @throws KeyStoreException
+	 * @throws IOException
+	 * @throws CertificateException
+	 * @throws NoSuchAlgorithmException
+	 */
+	private static Snapshot load(String path, String password)
+			throws KeyStoreException, IOException, CertificateException,
+			NoSuchAlgorithmException {
+		File file = new File(path);
+		long length = file.length();
+		long modified = file.lastModified();
+
+		KeyStore keyStore = KeyUtil.loadKeyStore(path, password);
+		List<X509Certificate> certs = new ArrayList<X509Certificate>();
+		TrustIndex index = new TrustIndex();
+
+		for (Enumeration<String> en = keyStore.aliases(); en.hasMoreElements();) {
+			String alias = en.nextElement();
+
+			if (keyStore.isCertificateEntry(alias)) {
+				X509Certificate cert = CertificateUtil
+						.convertCertificate(keyStore.getCertificate(alias));
+				certs.add(cert);
+				index.add(cert);
+			}
+		}
+
+		return new Snapshot(path, password, length, modified, index, certs
+				.toArray(new X509Certificate[certs.size()]));
+	}
+
+	/**
+	 * Loaded Trust Store
+	 * 
+	 */
+	private static class Snapshot {
+
+		/** File Path */
+		final String path;
+
+		/** Password */
+		final String password;
+
+		/** File Length */
+		final long length;
+
+		/** File Modified */
+		final long modified;
+
+		/** Trust Index */
+		final TrustIndex index;
+
+		/** Certificates */
+		final X509Certificate[] certs;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param path
+		 * @param password
+		 * @param length
+		 * @param modified
+		 * @param index
+		 * @param certs
+		 */
+		Snapshot(String path, String password, long length, long modified,
+				TrustIndex index, X509Certificate[] certs) {
+			this.path = path;
+			this.password = password;
+			this.length = length;
+			this.modified = modified;
+			this.index = index;
+			this.certs = certs;
+		}
+
+		/**
+		 * Is Snapshot Of The Requested Store
+		 * 
+		 * @param path
+		 * @param password
+		 * 
+		 * @return boolean
+		 */
+		boolean isFor(String path, String password) {
+			return this.path.equals(path)
+					&& (this.password == null ? password == null
+							: this.password.equals(password));
+		}
+
+		/**
+		 * Is File Unchanged
+		 * 
+		 * @param file
+		 * 
+		 * @return boolean
+		 */
+		boolean isCurrent(File file) {
+			return length == file.length() && modified == file.lastModified();
+		}
+	}
+}
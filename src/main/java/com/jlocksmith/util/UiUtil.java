@@ -248,8 +248,25 @@ public class UiUtil {
 	 * @return File
 	 */
 	public static File getSelectedFile(Component c, int dialogType, CustomFileFilter cff) {
+		return getSelectedFile(c, dialogType, cff, JFileChooser.FILES_ONLY);
+	}
+
+	/**
+	 * Show File Dialog
+	 * 
+	 * @param c Component
+	 * @param dialogType JFileChooser.OPEN_DIALOG, JFileChooser.SAVE_DIALOG,
+	 *            JFileChooser.CUSTOM_DIALOG
+	 * @param cff Custom File Filter
+	 * @param selectionMode JFileChooser.FILES_ONLY, JFileChooser.DIRECTORIES_ONLY,
+	 *            JFileChooser.FILES_AND_DIRECTORIES
+	 * 
+	 * @return File
+	 */
+	public static File getSelectedFile(Component c, int dialogType,
+			CustomFileFilter cff, int selectionMode) {
 		JFileChooser chooser = new JFileChooser();
-		chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+		chooser.setFileSelectionMode(selectionMode);
 		chooser.setDialogType(dialogType);
 		chooser.setMultiSelectionEnabled(false);
 
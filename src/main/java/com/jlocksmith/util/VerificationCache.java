@@ -0,0 +1,206 @@
+/*
+ * Copyright � 2011 Derek Helbert, djhelbert@gmail.com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package com.jlocksmith.util;
+
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signature Verification Cache. Results of verifying a certificate with a
+ * signer key are remembered by the SHA-256 of the signed certificate and of
+ * the signer public key, least recently used results are evicted first.
+ * Only a valid signature or a SignatureException is remembered, other
+ * failures such as a provider not available yet are tried again next time.
+ * 
+ * @author Derek Helbert
+ */
+public class VerificationCache {
+
+	/** Default Maximum Size */
+	public static final int DEFAULT_MAX_SIZE = 8192;
+
+	/** SHA-256 */
+	private static final String SHA256 = "SHA-256";
+
+	/** Cache */
+	private static VerificationCache cache;
+
+	/** Results */
+	private Map<String, Boolean> results;
+
+	/** Maximum Size */
+	private int maxSize;
+
+	/** Hits */
+	private AtomicLong hits = new AtomicLong();
+
+	/** Misses */
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param maxSize Maximum Number Of Results
+	 */
+	@SuppressWarnings("serial")
+	public VerificationCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.results = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > VerificationCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Get Instance
+	 * 
+	 * @return VerificationCache
+	 */
+	public static synchronized VerificationCache getInstance() {
+		if (cache == null) {
+			cache = new VerificationCache(DEFAULT_MAX_SIZE);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Verify Certificate
+	 * 
+	 * @param signed Signed Certificate
+	 * @param signer Signing Certificate
+	 * 
+	 * @return boolean
+	 */
+	public boolean verify(X509Certificate signed, X509Certificate signer) {
+		PublicKey key = signer.getPublicKey();
+		String id;
+
+		try {
+			id = digest(signed.getEncoded()) + ':' + digest(key.getEncoded());
+		} catch (Exception err) {
+			misses.incrementAndGet();
+			return Boolean.TRUE.equals(verify(signed, key));
+		}
+
+		Boolean result;
+
+		synchronized (results) {
+			result = results.get(id);
+		}
+
+		if (result != null) {
+			hits.incrementAndGet();
+			return result.booleanValue();
+		}
+
+		misses.incrementAndGet();
+		result = verify(signed, key);
+
+		if (result == null) {
+			return false;
+		}
+
+		synchronized (results) {
+			results.put(id, result);
+		}
+
+		return result.booleanValue();
+	}
+
+	/**
+	 * Get Hits
+	 * 
+	 * @return long
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get Misses
+	 * 
+	 * @return long
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Get Size
+	 * 
+	 * @return int
+	 */
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	/**
+	 * Clear Results And Counters
+	 * 
+	 */
+	public void clear() {
+		synchronized (results) {
+			results.clear();
+		}
+
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Verify Signature
+	 * 
+	 * @param signed Signed Certificate
+	 * @param key Signer Public Key
+	 * 
+	 * @return Boolean or null if the signature could not be checked
+	 */
+	private static Boolean verify(X509Certificate signed, PublicKey key) {
+		try {
+			signed.verify(key);
+		} catch (SignatureException ex) {
+			return Boolean.FALSE;
+		} catch (Exception ex) {
+			return null;
+		}
+
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * SHA-256 Hex Digest
+	 * 
+	 * @param bytes Bytes
+	 * 
+	 * @return String
+	 * 
+	 * @throws Exception
+	 */
+	private static String digest(byte[] bytes) throws Exception {
+		return CertificateUtil.toHex(MessageDigest.getInstance(SHA256).digest(bytes));
+	}
+}